@@ -0,0 +1,93 @@
+/* Back-end of Satellite Orbit Analizer: AccessAnalysis Class
+ * Access times of one ground station computed from an EphemerisStore, same output files as Satellite
+ * 
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ * 
+ * NOTE: Elevation crossings are searched between the stored steps and refined by bisection over a Hermite
+ *       interpolation of the two neighbouring steps, accesses still open at the end are not written (as in Satellite)
+ */
+
+// Orekit Libraries
+import org.orekit.frames.*;
+import org.orekit.time.*;
+import org.orekit.utils.*;
+
+// Java Libraries
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+// AccessAnalysis Class
+public class AccessAnalysis implements EphemerisAnalysis {
+  // Class Variables
+  private final TopocentricFrame station;
+  private final double elevation, threshold; // [rad], [s]
+  private final String stationFolder;
+  
+  // AccessAnalysis Constructor
+  public AccessAnalysis(TopocentricFrame sta, double threshold, double elevationDeg, String accessPath) {
+    station = sta;
+    this.threshold = threshold;
+    elevation = Math.toRadians(elevationDeg);
+    
+    // Create the station folder in case it does not exist
+    stationFolder = accessPath + "/" + station.getName();
+    File stationDir = new File(stationFolder);
+    if (!stationDir.exists())
+      stationDir.mkdirs();
+  }
+  
+  public void analyze(EphemerisStore store, int sat, DoubleBuffer series) throws Exception {
+    PrintWriter printer = new PrintWriter(stationFolder + "/" + store.getName(sat) + ".csv","UTF-8");
+    printer.println("\"Access\",\"Start Time (UTCG)\",\"Stop Time (UTCG)\",\"Duration (sec)\"");
+    
+    try {
+      int aNum = 1;
+      TimeStampedPVCoordinates prev = store.getPV(series, 0);
+      double prevG = g(prev, store.getFrame());
+      AbsoluteDate aBegin = store.getEpoch(); // In case the store starts during an access
+      
+      for (int step = 1; step < store.getNumSteps(); step++) {
+        TimeStampedPVCoordinates current = store.getPV(series, step);
+        double currentG = g(current, store.getFrame());
+        
+        if (prevG < 0 && currentG >= 0) {
+          aBegin = crossing(prev, current, store.getFrame());
+        } else if (prevG >= 0 && currentG < 0) {
+          Satellite.writeAccess(printer, aNum++, aBegin, crossing(prev, current, store.getFrame()));
+        }
+        
+        prev = current;
+        prevG = currentG;
+      }
+    } finally {
+      printer.close();
+    }
+  }
+  
+  // Elevation above the mask [rad]
+  private double g(TimeStampedPVCoordinates pv, Frame frame) throws Exception {
+    return station.getElevation(pv.getPosition(), frame, pv.getDate()) - elevation;
+  }
+  
+  // Finds the date where g changes sign between two consecutive steps
+  private AbsoluteDate crossing(TimeStampedPVCoordinates pv0, TimeStampedPVCoordinates pv1, Frame frame)
+    throws Exception {
+    List<TimeStampedPVCoordinates> samples = Arrays.asList(pv0, pv1);
+    boolean increasing = g(pv0, frame) < 0;
+    double t0 = 0.0, t1 = pv1.getDate().durationFrom(pv0.getDate());
+    
+    while (t1 - t0 > threshold) {
+      double tm = 0.5*(t0 + t1);
+      TimeStampedPVCoordinates pvm =
+        TimeStampedPVCoordinates.interpolate(pv0.getDate().shiftedBy(tm), CartesianDerivativesFilter.USE_PV, samples);
+      if ((g(pvm, frame) < 0) == increasing)
+        t0 = tm;
+      else
+        t1 = tm;
+    }
+    
+    return pv0.getDate().shiftedBy(0.5*(t0 + t1));
+  }
+}
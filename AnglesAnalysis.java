@@ -0,0 +1,64 @@
+/* Back-end of Satellite Orbit Analizer: AnglesAnalysis Class
+ * Sun and Earth angles computed from an EphemerisStore, same output files as Satellite
+ * 
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ */
+
+// Orekit Libraries
+import org.orekit.frames.*;
+import org.orekit.bodies.*;
+import org.orekit.utils.*;
+
+// Java Libraries
+import java.io.*;
+import java.nio.*;
+
+// AnglesAnalysis Class
+public class AnglesAnalysis implements EphemerisAnalysis {
+  // Class Variables
+  private final String sunPath, earthPath; // null to skip the respective angles
+  private final CelestialBody sunBody, earthBody;
+  
+  // AnglesAnalysis Constructor
+  public AnglesAnalysis(String sPath, String ePath) throws Exception {
+    sunPath = sPath;
+    earthPath = ePath;
+    sunBody = CelestialBodyFactory.getSun();
+    earthBody = CelestialBodyFactory.getEarth();
+  }
+  
+  public void analyze(EphemerisStore store, int sat, DoubleBuffer series) throws Exception {
+    PrintWriter sunAnglesPrinter = null, earthAnglesPrinter = null;
+    
+    // Set PrintWriters
+    if (sunPath != null) {
+      sunAnglesPrinter = new PrintWriter(sunPath + "/" + store.getName(sat) + "_sunAngles.csv","UTF-8");
+      sunAnglesPrinter.println("\"Time (UTCG)\",\"Azimuth (deg)\",\"Elevation (deg)\",\"Subsolar (deg)\"");
+    }
+    if (earthPath != null) {
+      earthAnglesPrinter = new PrintWriter(earthPath + "/" + store.getName(sat) + "_earthAngles.csv","UTF-8");
+      earthAnglesPrinter.println("\"Time (UTCG)\",\"Azimuth (deg)\",\"Elevation (deg)\"");
+    }
+    
+    try {
+      for (int step = 0; step < store.getNumSteps(); step++) {
+        TimeStampedPVCoordinates pv = store.getPV(series, step);
+        LocalOrbitalFrame locFrame = Satellite.getLocalFrame(store.getFrame(), pv);
+        
+        if (sunAnglesPrinter != null)
+          Satellite.writeSunAngles(sunAnglesPrinter, pv.getDate(),
+                                   Satellite.getSunAngles(sunBody, store.getFrame(), locFrame, pv));
+        if (earthAnglesPrinter != null)
+          Satellite.writeEarthAngles(earthAnglesPrinter, pv.getDate(),
+                                     Satellite.getEarthAngles(earthBody, locFrame, pv.getDate()));
+      }
+    } finally {
+      // Close PrintWriters
+      if (sunAnglesPrinter != null)
+        sunAnglesPrinter.close();
+      if (earthAnglesPrinter != null)
+        earthAnglesPrinter.close();
+    }
+  }
+}
@@ -0,0 +1,14 @@
+/* Back-end of Satellite Orbit Analizer: ArchiveVisitor Interface
+ * Receives the rows decoded by an OutputArchive scan
+ *
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ *
+ * NOTE: The values array is reused for every row, copy it to keep the values
+ */
+
+// ArchiveVisitor Interface
+public interface ArchiveVisitor {
+  // One row, time [ms from 1970-01-01 UTC] and values in the units of the series (see OutputArchive.Kind)
+  void visit(long time, double[] values) throws Exception;
+}
@@ -0,0 +1,275 @@
+/* Back-end of Satellite Orbit Analizer: ConstellationAggregator Class
+ * Constellation level results reduced while the satellites run, without writing any per satellite file:
+ * - Contact minutes per station and UTC day (summed over all the satellites)
+ * - Longest gap per station (longest time without any satellite in view)
+ * - Number of sunlit satellites per step (penumbra counts as sunlit)
+ *
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ *
+ * NOTE: Each thread reduces into its own accumulator (no locking while running), the accumulators are merged once
+ *       every satellite has finished (see merge)
+ * NOTE: The accesses are the ones written to the Access Times files, plus the accesses still open at the final date
+ *       (closed there by Satellite, the files drop them)
+ * NOTE: The coverage of each station is kept as the union of its accesses (overlapping accesses are merged as they
+ *       are added), so its size is bounded by the number of gaps, not by the number of accesses
+ * NOTE: Days are 86400 s long (leap seconds are ignored)
+ */
+
+// Orekit Libraries
+import org.orekit.errors.*;
+import org.orekit.time.*;
+
+// Java Libraries
+import java.io.*;
+import java.util.*;
+
+// ConstellationAggregator Class
+public class ConstellationAggregator {
+  // Defaults and Other Finals
+  private static final Locale loc = new Locale("EN","US");
+  private static final double DAY = 86400.0; // [s]
+  
+  // Class Variables
+  private final AbsoluteDate initialDate, firstDay; // firstDay: 00:00 UTC of the initial date
+  private final double duration, stepT, dayOffset; // [s], [s], [s] from firstDay to initialDate
+  private final int numSteps, numDays;
+  private final List<Accumulator> accumulators = new ArrayList<Accumulator>(); // One per thread
+  private final ThreadLocal<Accumulator> localAccumulator = new ThreadLocal<Accumulator>() {
+    protected Accumulator initialValue() {
+      Accumulator acc = new Accumulator();
+      synchronized (accumulators) {
+        accumulators.add(acc);
+      }
+      return acc;
+    }
+  };
+  private Accumulator merged;
+  
+  // Partial results of one thread
+  private class Accumulator {
+    final int[] sunlit = new int[numSteps];
+    final Map<String,double[]> contact = new HashMap<String,double[]>(); // Per station, [s] per day
+    final Map<String,Coverage> coverage = new HashMap<String,Coverage>(); // Per station
+  }
+  
+  // Union of time intervals, sorted and disjoint [s]
+  private static class Coverage {
+    private double[] begins = new double[16], ends = new double[16];
+    private int size = 0;
+    
+    // Adds an interval, merged with the ones it overlaps or touches
+    void add(double b, double e) {
+      // First interval ending at or after b, last one beginning at or before e
+      int lo = 0, hi = size;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (ends[mid] < b)
+          lo = mid + 1;
+        else
+          hi = mid;
+      }
+      int first = lo;
+      hi = size;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (begins[mid] <= e)
+          lo = mid + 1;
+        else
+          hi = mid;
+      }
+      int last = lo - 1;
+      
+      if (first > last) {
+        // No overlap, insert
+        if (size == begins.length) {
+          begins = Arrays.copyOf(begins, 2*size);
+          ends = Arrays.copyOf(ends, 2*size);
+        }
+        System.arraycopy(begins, first, begins, first + 1, size - first);
+        System.arraycopy(ends, first, ends, first + 1, size - first);
+        begins[first] = b;
+        ends[first] = e;
+        size++;
+      } else {
+        // Replace the overlapped intervals by their union
+        begins[first] = Math.min(b, begins[first]);
+        ends[first] = Math.max(e, ends[last]);
+        System.arraycopy(begins, last + 1, begins, first + 1, size - last - 1);
+        System.arraycopy(ends, last + 1, ends, first + 1, size - last - 1);
+        size -= last - first;
+      }
+    }
+    
+    // Adds every interval of another union
+    void addAll(Coverage other) {
+      for (int i = 0; i < other.size; i++)
+        add(other.begins[i], other.ends[i]);
+    }
+  }
+  
+  // ConstellationAggregator Constructor, same dates and step as the satellites
+  public ConstellationAggregator(AbsoluteDate iDate, AbsoluteDate fDate, double step) throws OrekitException {
+    initialDate = iDate;
+    duration = fDate.durationFrom(iDate);
+    stepT = step;
+    numSteps = (int) Math.floor(duration/stepT) + 1;
+    
+    firstDay = new AbsoluteDate(iDate.getComponents(0).getDate(), TimeScalesFactory.getUTC()); // Synched with UTC
+    dayOffset = iDate.durationFrom(firstDay);
+    numDays = (int) Math.ceil((dayOffset + duration)/DAY);
+  }
+  
+  ////////////////////////////////////////////////////// REDUCE ///////////////////////////////////////////////////////
+  // Adds the state of one satellite at one step
+  public void addStep(AbsoluteDate date, boolean sunlit) {
+    long step = Math.round(date.durationFrom(initialDate)/stepT);
+    if (sunlit && step >= 0 && step < numSteps)
+      localAccumulator.get().sunlit[(int) step]++;
+  }
+  
+  // Adds a station (so it is reported even without accesses)
+  public void addStation(String station) {
+    addStation(localAccumulator.get(), station);
+  }
+  
+  // Adds a station to an accumulator, if not there yet
+  private void addStation(Accumulator acc, String station) {
+    if (!acc.contact.containsKey(station)) {
+      acc.contact.put(station, new double[numDays]);
+      acc.coverage.put(station, new Coverage());
+    }
+  }
+  
+  // Adds an access of one satellite to a station (clipped to the propagation span)
+  public void addAccess(String station, AbsoluteDate begin, AbsoluteDate end) {
+    double b = Math.max(begin.durationFrom(initialDate), 0.0);
+    double e = Math.min(end.durationFrom(initialDate), duration);
+    if (e <= b)
+      return;
+    
+    Accumulator acc = localAccumulator.get();
+    addStation(acc, station);
+    
+    // Contact time, split at the day boundaries
+    double[] contact = acc.contact.get(station);
+    for (double t = b; t < e; ) {
+      int day = (int) Math.floor((dayOffset + t)/DAY);
+      double dayEnd = Math.min((day + 1)*DAY - dayOffset, e);
+      contact[day] += dayEnd - t;
+      t = dayEnd;
+    }
+    
+    acc.coverage.get(station).add(b, e);
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  ////////////////////////////////////////////////////// MERGE ////////////////////////////////////////////////////////
+  // Merges the accumulators of every thread, must be called after every satellite has finished
+  public synchronized void merge() {
+    merged = new Accumulator();
+    
+    synchronized (accumulators) {
+      for (Accumulator acc : accumulators) {
+        for (int k = 0; k < numSteps; k++)
+          merged.sunlit[k] += acc.sunlit[k];
+        
+        for (String station : acc.contact.keySet()) {
+          addStation(merged, station);
+          
+          double[] contact = merged.contact.get(station);
+          for (int d = 0; d < numDays; d++)
+            contact[d] += acc.contact.get(station)[d];
+          merged.coverage.get(station).addAll(acc.coverage.get(station));
+        }
+      }
+    }
+  }
+  
+  // Stations (or station masks, see Satellite.setElevationDetector)
+  public synchronized Set<String> getStations() {
+    return new TreeSet<String>(merged.contact.keySet());
+  }
+  
+  // Contact minutes of a station, per day
+  public synchronized double[] getContactMinutes(String station) {
+    double[] minutes = new double[numDays];
+    if (merged.contact.containsKey(station))
+      for (int d = 0; d < numDays; d++)
+        minutes[d] = merged.contact.get(station)[d]/60.0;
+    return minutes;
+  }
+  
+  // Longest gap of a station {start [s from the initial date], duration [s]}
+  public synchronized double[] getLongestGap(String station) {
+    Coverage coverage = merged.coverage.containsKey(station) ? merged.coverage.get(station) : new Coverage();
+    
+    // The gaps are between consecutive intervals of the coverage, covered is the end of the previous one
+    double covered = 0.0, gapStart = 0.0, gap = 0.0;
+    for (int i = 0; i < coverage.size; i++) {
+      if (coverage.begins[i] - covered > gap) {
+        gapStart = covered;
+        gap = coverage.begins[i] - covered;
+      }
+      covered = coverage.ends[i];
+    }
+    if (duration - covered > gap) {
+      gapStart = covered;
+      gap = duration - covered;
+    }
+    
+    return new double[] {gapStart, gap};
+  }
+  
+  // Number of sunlit satellites per step
+  public synchronized int[] getSunlit() {
+    return merged.sunlit.clone();
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  // Merges and writes the results (ContactMinutes.csv, LongestGaps.csv and Sunlit.csv) into the given folder
+  public void writeResults(String path) throws Exception {
+    merge();
+    new File(path).mkdirs();
+    
+    PrintWriter printer = new PrintWriter(path + "/ContactMinutes.csv","UTF-8");
+    printer.println("\"Station\",\"Date (UTCG)\",\"Contact (min)\"");
+    for (String station : getStations()) {
+      double[] minutes = getContactMinutes(station);
+      for (int d = 0; d < numDays; d++) {
+        DateComponents dateComps = firstDay.shiftedBy(d*DAY).getComponents(0).getDate(); // Synched with UTC
+        printer.printf(loc,"%s,%d %s %d,%.3f\n",station,dateComps.getDay(),
+                       dateComps.getMonthEnum().getCapitalizedAbbreviation(),dateComps.getYear(),minutes[d]);
+      }
+    }
+    printer.close();
+    
+    printer = new PrintWriter(path + "/LongestGaps.csv","UTF-8");
+    printer.println("\"Station\",\"Start Time (UTCG)\",\"Stop Time (UTCG)\",\"Duration (sec)\"");
+    for (String station : getStations()) {
+      double[] gap = getLongestGap(station);
+      AbsoluteDate gapStart = initialDate.shiftedBy(gap[0]);
+      printer.printf(loc,"%s,%s,%s,%07.3f\n",station,formatDate(gapStart),formatDate(gapStart.shiftedBy(gap[1])),
+                     gap[1]);
+    }
+    printer.close();
+    
+    printer = new PrintWriter(path + "/Sunlit.csv","UTF-8");
+    printer.println("\"Time (UTCG)\",\"Sunlit Satellites\"");
+    int[] sunlit = getSunlit();
+    for (int k = 0; k < numSteps; k++)
+      printer.printf(loc,"%s,%d\n",formatDate(initialDate.shiftedBy(k*stepT)),sunlit[k]);
+    printer.close();
+  }
+  
+  // Date in the format of the output files
+  private static String formatDate(AbsoluteDate absDate) throws OrekitException {
+    DateTimeComponents dateTimeComps = absDate.getComponents(0); // Synched with UTC
+    DateComponents dateComps = dateTimeComps.getDate();
+    TimeComponents timeComps = dateTimeComps.getTime();
+    
+    return String.format(loc,"%d %s %d %02d:%02d:%06.3f",dateComps.getDay(),
+                         dateComps.getMonthEnum().getCapitalizedAbbreviation(),dateComps.getYear(),
+                         timeComps.getHour(),timeComps.getMinute(),timeComps.getSecond());
+  }
+}
@@ -0,0 +1,17 @@
+/* Back-end of Satellite Orbit Analizer: EphemerisAnalysis Interface
+ * Analysis pass over the series stored in an EphemerisStore (see AnglesAnalysis, AccessAnalysis)
+ * 
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ * 
+ * NOTE: analyze is called from several threads at the same time, each call with a different satellite
+ */
+
+// Java Libraries
+import java.nio.*;
+
+// EphemerisAnalysis Interface
+public interface EphemerisAnalysis {
+  // Analyzes one satellite, series is the mapped series of the satellite (see EphemerisStore.getPV)
+  void analyze(EphemerisStore store, int sat, DoubleBuffer series) throws Exception;
+}
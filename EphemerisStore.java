@@ -0,0 +1,199 @@
+/* Back-end of Satellite Orbit Analizer: EphemerisStore Class
+ * Memory-mapped store of the PV time series of every satellite, so the catalog is propagated only once and any
+ * number of analyses (see EphemerisAnalysis) can read it afterwards
+ *
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ *
+ * File layout (native byte order):
+ * - Header: magic, number of satellites, number of steps (ints), epoch [s from J2000], step [s] (doubles)
+ * - Names: one slot of NAME_BYTES (UTF-8, zero padded) per satellite
+ * - Data: per satellite, per step, {x, y, z, vx, vy, vz} [m, m/s] in EME2000 (doubles)
+ *
+ * NOTE: Only the region of the satellite being written or read is mapped, so the heap usage does not depend on the
+ *       size of the catalog.
+ */
+
+// Orekit Libraries
+import org.orekit.frames.*;
+import org.orekit.time.*;
+import org.orekit.utils.*;
+
+// Hipparchus Libraries
+import org.hipparchus.geometry.euclidean.threed.*;
+
+// Java Libraries
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// EphemerisStore Class
+public class EphemerisStore implements Closeable {
+  // Defaults and Other Finals
+  private static final int MAGIC = 0x534F4145; // "SOAE"
+  private static final int HEADER_BYTES = 32, NAME_BYTES = 64;
+  public static final int PV_SIZE = 6; // Doubles per step
+  
+  // Class Variables
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final FileChannel.MapMode mode;
+  private final int numSats, numSteps;
+  private final AbsoluteDate epoch;
+  private final double stepT;
+  private final String[] names;
+  private final Frame inertialFrame;
+  
+  // Creates a new store for the given satellites, with numSteps steps of stepT seconds starting at epoch
+  public static EphemerisStore create(String fileName, String[] satNames, AbsoluteDate epoch, double stepT, int numSteps)
+    throws Exception {
+    RandomAccessFile raf = new RandomAccessFile(fileName,"rw");
+    raf.setLength(dataOffset(satNames.length) + (long) satNames.length*numSteps*PV_SIZE*8);
+    
+    // Header and names
+    MappedByteBuffer head = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, dataOffset(satNames.length));
+    head.order(ByteOrder.nativeOrder());
+    head.putInt(MAGIC).putInt(satNames.length).putInt(numSteps);
+    head.putDouble(epoch.durationFrom(AbsoluteDate.J2000_EPOCH)).putDouble(stepT);
+    for (int i = 0; i < satNames.length; i++) {
+      byte[] b = satNames[i].getBytes(StandardCharsets.UTF_8);
+      head.position(HEADER_BYTES + i*NAME_BYTES);
+      head.put(b, 0, Math.min(b.length, NAME_BYTES));
+    }
+    head.force();
+    
+    return new EphemerisStore(raf, FileChannel.MapMode.READ_WRITE);
+  }
+  
+  // Opens an existing store for reading
+  public static EphemerisStore open(String fileName) throws Exception {
+    return new EphemerisStore(new RandomAccessFile(fileName,"r"), FileChannel.MapMode.READ_ONLY);
+  }
+  
+  // EphemerisStore Constructor, reads the header
+  private EphemerisStore(RandomAccessFile raf, FileChannel.MapMode m) throws Exception {
+    file = raf;
+    channel = raf.getChannel();
+    mode = m;
+    
+    MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+    head.order(ByteOrder.nativeOrder());
+    if (head.getInt() != MAGIC)
+      throw new IOException("Not an ephemeris store.");
+    numSats = head.getInt();
+    numSteps = head.getInt();
+    epoch = AbsoluteDate.J2000_EPOCH.shiftedBy(head.getDouble());
+    stepT = head.getDouble();
+    
+    MappedByteBuffer nameBuf = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) numSats*NAME_BYTES);
+    names = new String[numSats];
+    byte[] b = new byte[NAME_BYTES];
+    for (int i = 0; i < numSats; i++) {
+      nameBuf.get(b);
+      int len = 0;
+      while (len < NAME_BYTES && b[len] != 0)
+        len++;
+      names[i] = new String(b, 0, len, StandardCharsets.UTF_8);
+    }
+    
+    inertialFrame = FramesFactory.getEME2000();
+  }
+  
+  // Offset of the data region [bytes]
+  private static long dataOffset(int sats) {
+    return HEADER_BYTES + (long) sats*NAME_BYTES;
+  }
+  
+  ///////////////////////////////////////////////////// GET METHODS ///////////////////////////////////////////////////
+  public int getNumSats() {
+    return numSats;
+  }
+  
+  public int getNumSteps() {
+    return numSteps;
+  }
+  
+  public AbsoluteDate getEpoch() {
+    return epoch;
+  }
+  
+  public double getStep() {
+    return stepT;
+  }
+  
+  public String getName(int sat) {
+    return names[sat];
+  }
+  
+  // Frame of the stored coordinates
+  public Frame getFrame() {
+    return inertialFrame;
+  }
+  
+  // Date of the given step
+  public AbsoluteDate getDate(int step) {
+    return epoch.shiftedBy(step*stepT);
+  }
+  
+  // Step of the given date (rounded), -1 if the date is outside of the store
+  public int getStepIndex(AbsoluteDate date) {
+    long step = Math.round(date.durationFrom(epoch)/stepT);
+    return (step < 0 || step >= numSteps) ? -1 : (int) step;
+  }
+  
+  // Maps the series of one satellite, PV of step k starts at index k*PV_SIZE
+  public DoubleBuffer getSeries(int sat) throws IOException {
+    long size = (long) numSteps*PV_SIZE*8;
+    MappedByteBuffer buf = channel.map(mode, dataOffset(numSats) + sat*size, size);
+    return buf.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+  }
+  
+  // Gets the coordinates of one step from a mapped series
+  public TimeStampedPVCoordinates getPV(DoubleBuffer series, int step) {
+    int i = step*PV_SIZE;
+    return new TimeStampedPVCoordinates(getDate(step),
+                                        new Vector3D(series.get(i), series.get(i+1), series.get(i+2)),
+                                        new Vector3D(series.get(i+3), series.get(i+4), series.get(i+5)));
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  // Writes the coordinates (in the store frame) of one step into a mapped series
+  public static void putPV(DoubleBuffer series, int step, PVCoordinates pv) {
+    int i = step*PV_SIZE;
+    Vector3D p = pv.getPosition(), v = pv.getVelocity();
+    series.put(i, p.getX()).put(i+1, p.getY()).put(i+2, p.getZ());
+    series.put(i+3, v.getX()).put(i+4, v.getY()).put(i+5, v.getZ());
+  }
+  
+  ////////////////////////////////////////////////////// ANALYZE //////////////////////////////////////////////////////
+  // Runs the analyses over every satellite of the store, in parallel
+  public void analyze(final List<EphemerisAnalysis> analyses, int threads) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    
+    for (int i = 0; i < numSats; i++) {
+      final int sat = i;
+      pool.execute(new Runnable() {
+        public void run() {
+          try {
+            DoubleBuffer series = getSeries(sat);
+            for (EphemerisAnalysis analysis : analyses)
+              analysis.analyze(EphemerisStore.this, sat, series);
+          } catch (Exception e) {
+            System.out.println("Error analyzing " + names[sat] + ": " + e);
+          }
+        }
+      });
+    }
+    
+    pool.shutdown();
+    pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  public void close() throws IOException {
+    file.close();
+  }
+}
@@ -0,0 +1,178 @@
+/* Back-end of Satellite Orbit Analizer: ForceModelData Class
+ * Force model data for numerical propagation, loaded once and shared (read-only) by all the satellites
+ *
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ *
+ * NOTE: The gravity field (eigen-6s), the solar activity (MSAFE) and the ocean tides (FES2004) are read from the
+ *       Orekit data folder only once, when the object is created. Each satellite then builds its own lightweight
+ *       force models on top of this data (see createForceModels).
+ * NOTE: The MSAFE files only cover a limited time span, dates outside of it use the first/last available values.
+ * NOTE: The MSAFE monthly values are copied once into immutable tables (see SolarActivityTable), so the drag of all
+ *       the satellites is computed without any lock (MSAFE itself keeps the last bracketing lines, not thread safe)
+ */
+
+// Orekit Libraries
+import org.orekit.frames.*;
+import org.orekit.time.*;
+import org.orekit.errors.*;
+import org.orekit.bodies.*;
+import org.orekit.utils.*;
+import org.orekit.forces.*;
+import org.orekit.forces.drag.*;
+import org.orekit.forces.drag.atmosphere.*;
+import org.orekit.forces.drag.atmosphere.data.*;
+import org.orekit.forces.gravity.*;
+import org.orekit.forces.gravity.potential.*;
+
+// Hipparchus Libraries
+import org.hipparchus.util.FastMath;
+
+// Java Libraries
+import java.util.*;
+
+// ForceModelData Class
+public class ForceModelData {
+  // Defaults and Other Finals
+  private static final String MSAFE_NAMES = "\\p{Alpha}\\p{Lower}\\p{Lower}\\p{Digit}\\p{Digit}\\p{Digit}\\p{Digit}F10\\.(?:txt|TXT)";
+  
+  // Shared data (never modified after the constructor)
+  private final Frame earthFrame;
+  private final OneAxisEllipsoid earthShape;
+  private final CelestialBody sunBody;
+  private final NormalizedSphericalHarmonicsProvider gravityField;
+  private final DTM2000InputParameters solarActivity;
+  private final ForceModel oceanTides; // null if disabled
+  private final String description;
+  
+  // ForceModelData Constructor, degree and order of the gravity field, ocean tides degree and order (0 disables them)
+  public ForceModelData(int degree, int order, int tidesDegree, int tidesOrder) throws Exception {
+    earthFrame = FramesFactory.getITRF(IERSConventions.IERS_2010, true);
+    earthShape = new OneAxisEllipsoid(Constants.WGS84_EARTH_EQUATORIAL_RADIUS,
+                                      Constants.WGS84_EARTH_FLATTENING,
+                                      earthFrame);
+    sunBody = CelestialBodyFactory.getSun();
+    
+    // Gravity field coefficients, read once
+    gravityField = GravityFieldFactory.getNormalizedProvider(degree, order);
+    
+    // Solar activity, MSAFE files are loaded lazily so force the loading now
+    MarshallSolarActivityFutureEstimation msafe =
+      new MarshallSolarActivityFutureEstimation(MSAFE_NAMES, MarshallSolarActivityFutureEstimation.StrengthLevel.AVERAGE);
+    solarActivity = new SolarActivityTable(msafe);
+    
+    // Ocean tides, the model caches its own field (thread safe) so a single instance is shared
+    if (tidesDegree > 0 && tidesOrder > 0) {
+      oceanTides = new OceanTides(earthFrame, gravityField.getAe(), gravityField.getMu(), tidesDegree, tidesOrder,
+                                  IERSConventions.IERS_2010, TimeScalesFactory.getUT1(IERSConventions.IERS_2010, true));
+    } else {
+      oceanTides = null;
+    }
+    
+    description = "gravity " + degree + "x" + order + ", tides " +
+                  ((oceanTides == null) ? "off" : tidesDegree + "x" + tidesOrder);
+  }
+  
+  // Configuration of the force models (e.g. "gravity 8x8, tides off")
+  public String getDescription() {
+    return description;
+  }
+  
+  // Central attraction coefficient of the gravity field
+  public double getMu() {
+    return gravityField.getMu();
+  }
+  
+  // Creates the force models of one satellite (cross section [m^2], drag coefficient)
+  public List<ForceModel> createForceModels(double crossSection, double dragCoeff) throws Exception {
+    List<ForceModel> forces = new ArrayList<ForceModel>();
+    
+    forces.add(new HolmesFeatherstoneAttractionModel(earthFrame, gravityField));
+    forces.add(new DragForce(new DTM2000(solarActivity, sunBody, earthShape), new IsotropicDrag(crossSection, dragCoeff)));
+    if (oceanTides != null)
+      forces.add(oceanTides);
+    
+    return forces;
+  }
+  
+  // Immutable copy of the MSAFE monthly values, interpolated the same way (linearly between the first day of each
+  // month, Kp from the interpolated Ap), thread safe without locks
+  private static class SolarActivityTable implements DTM2000InputParameters {
+    private static final long serialVersionUID = 1L;
+    
+    private final AbsoluteDate epoch; // First month
+    private final double[] times; // [s] from the epoch
+    private final double[] flux; // F10.7
+    private final double[] ap;
+    
+    SolarActivityTable(MarshallSolarActivityFutureEstimation msafe) throws OrekitException {
+      TimeScale utc = TimeScalesFactory.getUTC();
+      DateComponents first = msafe.getMinDate().getComponents(utc).getDate();
+      AbsoluteDate maxDate = msafe.getMaxDate();
+      epoch = new AbsoluteDate(first, utc);
+      
+      List<AbsoluteDate> months = new ArrayList<AbsoluteDate>();
+      int year = first.getYear(), month = first.getMonth();
+      AbsoluteDate node = epoch;
+      while (node.compareTo(maxDate) <= 0) {
+        months.add(node);
+        if (++month > 12) {
+          month = 1;
+          year++;
+        }
+        node = new AbsoluteDate(year, month, 1, utc);
+      }
+      
+      // MSAFE returns the line values at their own dates, Kp = 1.89 asinh(0.154 Ap)
+      times = new double[months.size()];
+      flux = new double[months.size()];
+      ap = new double[months.size()];
+      for (int i = 0; i < times.length; i++) {
+        AbsoluteDate date = months.get(i);
+        times[i] = date.durationFrom(epoch);
+        flux[i] = msafe.getMeanFlux(date);
+        ap[i] = FastMath.sinh(msafe.get24HoursKp(date) / 1.89) / 0.154;
+      }
+    }
+    
+    // Linear interpolation of a table, clamped to the first/last values
+    private double interpolate(double[] table, AbsoluteDate date) {
+      double t = date.durationFrom(epoch);
+      if (t <= times[0])
+        return table[0];
+      if (t >= times[times.length - 1])
+        return table[times.length - 1];
+      
+      int i = Arrays.binarySearch(times, t);
+      if (i >= 0)
+        return table[i];
+      i = -i - 2; // Previous node
+      double w = (t - times[i]) / (times[i + 1] - times[i]);
+      return table[i] + w*(table[i + 1] - table[i]);
+    }
+    
+    public AbsoluteDate getMinDate() {
+      return AbsoluteDate.PAST_INFINITY;
+    }
+    
+    public AbsoluteDate getMaxDate() {
+      return AbsoluteDate.FUTURE_INFINITY;
+    }
+    
+    public double getInstantFlux(AbsoluteDate date) {
+      return interpolate(flux, date);
+    }
+    
+    public double getMeanFlux(AbsoluteDate date) {
+      return interpolate(flux, date);
+    }
+    
+    public double getThreeHourlyKP(AbsoluteDate date) {
+      return get24HoursKp(date);
+    }
+    
+    public double get24HoursKp(AbsoluteDate date) {
+      return 1.89 * FastMath.asinh(0.154 * interpolate(ap, date));
+    }
+  }
+}
@@ -0,0 +1,328 @@
+/* Back-end of Satellite Orbit Analizer: GorillaBlock Class
+ * Compressed block of a time series (timestamps and columns of values), in the style of the Gorilla time series
+ * encoding (Pelkonen et al., "Gorilla: A Fast, Scalable, In-Memory Time Series Database", VLDB 2015)
+ *
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ *
+ * Encoding (the first row is stored raw, 64 bits per field):
+ * - Predictor of each column (2 bits each): last value, linear or quadratic extrapolation
+ * - Timestamps: delta-of-delta, '0' if the step did not change, otherwise '10', '110', '1110', '11110' or '11111'
+ *   followed by the delta-of-delta in 7, 9, 12, 32 or 64 bits
+ * - Values: XOR with the prediction, '0' if equal, '10' followed by the meaningful bits inside the previous window,
+ *   or '11' followed by the leading zeros (5 bits), the length (6 bits) and the meaningful bits of a new window
+ *
+ * NOTE: Unlike Gorilla (XOR with the last value), each column of each block uses the predictor giving the fewest bits
+ *       (smooth series like the Sun angles compress best extrapolated, noisy ones like the azimuth near nadir with the
+ *       last value), and a new window is started whenever it is shorter than reusing the previous one
+ * NOTE: Lossless for any double, the encoding is most compact for integer valued doubles (see OutputArchive)
+ */
+
+// Java Libraries
+import java.util.*;
+
+// GorillaBlock Class
+public class GorillaBlock {
+  // Defaults and Other Finals
+  private static final int LAST = 0, LINEAR = 1, QUADRATIC = 2; // Predictors
+  
+  // Prediction and window of one column
+  private static class Column {
+    final int predictor;
+    double last, last2, last3; // Last three values
+    int leading = -1, trailing; // Window, leading is -1 if none yet
+    
+    Column(int pred, double first) {
+      predictor = pred;
+      last = first;
+      last2 = first;
+      last3 = first;
+    }
+    
+    // Prediction of the next value (the last value if the extrapolation is not finite)
+    double predict() {
+      double predicted;
+      if (predictor == LINEAR)
+        predicted = 2.0*last - last2;
+      else if (predictor == QUADRATIC)
+        predicted = 3.0*last - 3.0*last2 + last3;
+      else
+        return last;
+      return (Double.isNaN(predicted) || Double.isInfinite(predicted)) ? last : predicted;
+    }
+    
+    void push(double value) {
+      last3 = last2;
+      last2 = last;
+      last = value;
+    }
+  }
+  
+  // Encoder of one block, rows are added in time order and encoded by toWords
+  public static class Encoder {
+    private final int numCols;
+    private long[] times = new long[256];
+    private double[] values;
+    private int rows = 0;
+    private long[] words;
+    private long pos; // [bits]
+    
+    public Encoder(int cols) {
+      numCols = cols;
+      values = new double[times.length*cols];
+    }
+    
+    public int getRows() {
+      return rows;
+    }
+    
+    // Adds a row (rowValues holds one value per column)
+    public void add(long time, double[] rowValues) {
+      if (rows == times.length) {
+        times = Arrays.copyOf(times, 2*rows);
+        values = Arrays.copyOf(values, 2*rows*numCols);
+      }
+      times[rows] = time;
+      System.arraycopy(rowValues, 0, values, rows*numCols, numCols);
+      rows++;
+    }
+    
+    // Encodes the block, returns its words (the last one zero padded)
+    public long[] toWords() {
+      words = new long[64];
+      pos = 0;
+      if (rows == 0)
+        return new long[0];
+      
+      // Predictor of each column, the one giving the fewest bits
+      Column[] columns = new Column[numCols];
+      for (int c = 0; c < numCols; c++) {
+        long fewest = Long.MAX_VALUE;
+        for (int pred = LAST; pred <= QUADRATIC; pred++) {
+          Column col = new Column(pred, values[c]);
+          long bits = 0;
+          for (int r = 1; r < rows; r++)
+            bits += writeValue(col, values[r*numCols + c], false);
+          if (bits < fewest) {
+            fewest = bits;
+            columns[c] = new Column(pred, values[c]);
+          }
+        }
+        writeBits(columns[c].predictor, 2);
+      }
+      
+      // First row
+      writeBits(times[0], 64);
+      for (int c = 0; c < numCols; c++)
+        writeBits(Double.doubleToRawLongBits(values[c]), 64);
+      
+      // Other rows
+      long prevDelta = 0;
+      for (int r = 1; r < rows; r++) {
+        long delta = times[r] - times[r - 1];
+        writeTime(delta - prevDelta);
+        prevDelta = delta;
+        for (int c = 0; c < numCols; c++)
+          writeValue(columns[c], values[r*numCols + c], true);
+      }
+      
+      return Arrays.copyOf(words, (int) ((pos + 63) >>> 6));
+    }
+    
+    private void writeTime(long dod) {
+      if (dod == 0)
+        writeBits(0, 1);
+      else if (fits(dod, 7))
+        writeBits((0x2L << 7) | (dod & 0x7F), 9);
+      else if (fits(dod, 9))
+        writeBits((0x6L << 9) | (dod & 0x1FF), 12);
+      else if (fits(dod, 12))
+        writeBits((0xEL << 12) | (dod & 0xFFF), 16);
+      else if (fits(dod, 32)) {
+        writeBits(0x1E, 5);
+        writeBits(dod, 32);
+      } else {
+        writeBits(0x1F, 5);
+        writeBits(dod, 64);
+      }
+    }
+    
+    // Writes a value of a column (only counts its bits if write is false), returns the number of bits
+    private int writeValue(Column col, double value, boolean write) {
+      long xor = Double.doubleToRawLongBits(value) ^ Double.doubleToRawLongBits(col.predict());
+      int bits;
+      
+      if (xor == 0) {
+        bits = 1;
+        if (write)
+          writeBits(0, 1);
+      } else {
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        int length = 64 - leading - trailing;
+        int prevLength = 64 - col.leading - col.trailing;
+        
+        if (col.leading >= 0 && leading >= col.leading && trailing >= col.trailing && prevLength <= length + 11) {
+          // Inside the previous window (unless a new one is shorter, 11 bits of header)
+          bits = 2 + prevLength;
+          if (write) {
+            writeBits(0x2, 2);
+            writeBits(xor >>> col.trailing, prevLength);
+          }
+        } else {
+          // New window
+          bits = 13 + length;
+          if (write) {
+            writeBits((0x3L << 11) | (leading << 6) | (length & 0x3F), 13);
+            writeBits(xor >>> trailing, length);
+          }
+          col.leading = leading;
+          col.trailing = trailing;
+        }
+      }
+      
+      col.push(value);
+      return bits;
+    }
+    
+    // Writes the n (1 to 64) lowest bits of value
+    private void writeBits(long value, int n) {
+      int word = (int) (pos >>> 6), free = 64 - (int) (pos & 63);
+      if (word + 1 >= words.length)
+        words = Arrays.copyOf(words, 2*words.length);
+      
+      long v = (n == 64) ? value : value & ((1L << n) - 1);
+      if (n <= free) {
+        words[word] |= v << (free - n);
+      } else {
+        words[word] |= v >>> (n - free);
+        words[word + 1] |= v << (64 - (n - free));
+      }
+      pos += n;
+    }
+    
+    // True if value fits in n bits (two's complement)
+    private static boolean fits(long value, int n) {
+      return value >= -(1L << (n - 1)) && value < (1L << (n - 1));
+    }
+  }
+  
+  // Decoder of one block, can be reset to decode other blocks
+  public static class Decoder {
+    private final int numCols;
+    private long[] words;
+    private long pos; // [bits]
+    private int rows, remaining;
+    private long time, prevDelta;
+    private final int[] predictors;
+    private final Column[] columns;
+    private final double[] values;
+    
+    public Decoder(int cols) {
+      numCols = cols;
+      predictors = new int[cols];
+      columns = new Column[cols];
+      values = new double[cols];
+    }
+    
+    // Starts decoding a block of the given number of rows
+    public void reset(long[] blockWords, int numRows) {
+      words = blockWords;
+      pos = 0;
+      rows = numRows;
+      remaining = numRows;
+      if (rows > 0)
+        for (int c = 0; c < numCols; c++)
+          predictors[c] = (int) readBits(2);
+    }
+    
+    // Decodes the next row, false at the end of the block
+    public boolean next() {
+      if (remaining == 0)
+        return false;
+      
+      if (remaining == rows) {
+        time = readBits(64);
+        prevDelta = 0;
+        for (int c = 0; c < numCols; c++) {
+          values[c] = Double.longBitsToDouble(readBits(64));
+          columns[c] = new Column(predictors[c], values[c]);
+        }
+      } else {
+        prevDelta += readTime();
+        time += prevDelta;
+        for (int c = 0; c < numCols; c++)
+          values[c] = readValue(columns[c]);
+      }
+      
+      remaining--;
+      return true;
+    }
+    
+    // Time of the current row
+    public long getTime() {
+      return time;
+    }
+    
+    // Values of the current row (reused by next)
+    public double[] getValues() {
+      return values;
+    }
+    
+    private long readTime() {
+      if (readBit() == 0)
+        return 0;
+      
+      int ones = 1;
+      while (ones < 5 && readBit() == 1)
+        ones++;
+      
+      switch (ones) {
+        case 1: return signExtend(readBits(7), 7);
+        case 2: return signExtend(readBits(9), 9);
+        case 3: return signExtend(readBits(12), 12);
+        case 4: return signExtend(readBits(32), 32);
+        default: return readBits(64);
+      }
+    }
+    
+    private double readValue(Column col) {
+      double value = col.predict();
+      
+      if (readBit() == 1) {
+        if (readBit() == 1) {
+          long header = readBits(11);
+          int length = (int) (header & 0x3F);
+          col.leading = (int) (header >>> 6);
+          col.trailing = 64 - col.leading - ((length == 0) ? 64 : length);
+        }
+        
+        long xor = readBits(64 - col.leading - col.trailing) << col.trailing;
+        value = Double.longBitsToDouble(Double.doubleToRawLongBits(value) ^ xor);
+      }
+      
+      col.push(value);
+      return value;
+    }
+    
+    private int readBit() {
+      int bit = (int) ((words[(int) (pos >>> 6)] >>> (63 - (int) (pos & 63))) & 1);
+      pos++;
+      return bit;
+    }
+    
+    // Reads n (1 to 64) bits
+    private long readBits(int n) {
+      int word = (int) (pos >>> 6), off = (int) (pos & 63);
+      long v = words[word] << off;
+      if (off + n > 64)
+        v |= words[word + 1] >>> (64 - off);
+      pos += n;
+      return v >>> (64 - n);
+    }
+    
+    private static long signExtend(long value, int n) {
+      return (value << (64 - n)) >> (64 - n);
+    }
+  }
+}
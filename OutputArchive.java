@@ -0,0 +1,400 @@
+/* Back-end of Satellite Orbit Analizer: OutputArchive Class
+ * Compressed long-term archive of the output series (Sun angles, Earth angles and access times), with blocks indexed
+ * by time so a scan only reads and decompresses the blocks overlapping the requested range (see SOAArchive)
+ *
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ *
+ * File layout (big endian):
+ * - Header: magic, version (ints)
+ * - Blocks: GorillaBlock words of up to BLOCK_ROWS rows, one series per block
+ * - Index: per series (kind, station, satellite) the time range, rows, offset, size and logical (CSV) bytes of its
+ *   blocks
+ * - Footer: index offset (long), magic (int)
+ * - Appended blocks, index and footer (see openForAppend), the last footer of the file is the valid one
+ *
+ * NOTE: Times are milliseconds from 1970-01-01 UTC, values are stored as fixed decimal (see Kind) which is lossless
+ *       for the precision of the CSV files and makes the XOR encoding much more compact
+ * NOTE: A series can be appended several times (e.g. one run per day, see openForAppend), its blocks are kept sorted
+ *       by time. The new blocks and the new index are written after the old footer, which stays valid until the new
+ *       footer is written (an interrupted append leaves the archive as it was, its partial data is overwritten by the
+ *       next append). Each append leaves its previous index unused in the file.
+ * NOTE: Rows with a time inside the time range of a block of their series already in the archive are skipped (e.g.
+ *       the same folder imported twice)
+ */
+
+// Java Libraries
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+// OutputArchive Class
+public class OutputArchive implements Closeable {
+  // Defaults and Other Finals
+  private static final int MAGIC = 0x534F4152; // "SOAR"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 8, FOOTER_BYTES = 12;
+  public static final int BLOCK_ROWS = 1024;
+  
+  // Series kinds, columns and their scale (10^decimals of the CSV files)
+  public enum Kind {
+    SUN(1000.0, 1000.0, 1000.0), // Azimuth, elevation, subsolar [deg]
+    EARTH(1000.0, 1000.0), // Azimuth, elevation [deg]
+    ACCESS(1.0, 1000.0, 1000.0); // Access number, stop time - start time [s], duration [s] (time is the start)
+    
+    final double[] scales;
+    
+    Kind(double... s) {
+      scales = s;
+    }
+    
+    public int getColumns() {
+      return scales.length;
+    }
+  }
+  
+  // Class Variables
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final boolean writing;
+  private long position; // End of the blocks [bytes] (writing)
+  private long validEnd; // End of the last valid footer [bytes] (0 if none yet)
+  private final Map<String,Series> series = new TreeMap<String,Series>();
+  
+  // Index of one series
+  private static class Series {
+    final Kind kind;
+    final String station, satellite; // station is "" for SUN and EARTH
+    final List<Block> blocks = new ArrayList<Block>();
+    
+    Series(Kind k, String sta, String sat) {
+      kind = k;
+      station = sta;
+      satellite = sat;
+    }
+  }
+  
+  // Index of one block
+  private static class Block {
+    long minTime, maxTime, offset, logicalBytes; // [ms], [ms], [bytes], [bytes]
+    int rows, numWords;
+  }
+  
+  // Creates a new (empty) archive
+  public static OutputArchive create(String fileName) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(fileName,"rw");
+    raf.setLength(0);
+    raf.writeInt(MAGIC);
+    raf.writeInt(VERSION);
+    
+    return new OutputArchive(raf, true);
+  }
+  
+  // Opens an existing archive for scanning
+  public static OutputArchive open(String fileName) throws IOException {
+    OutputArchive archive = new OutputArchive(new RandomAccessFile(fileName,"r"), false);
+    try {
+      archive.readIndex();
+    } catch (IOException e) {
+      archive.file.close();
+      throw e;
+    }
+    return archive;
+  }
+  
+  // Opens an existing archive to append more rows, the new blocks start after the last valid footer
+  public static OutputArchive openForAppend(String fileName) throws IOException {
+    if (!new File(fileName).isFile())
+      throw new FileNotFoundException(fileName + " (no such archive)");
+    
+    OutputArchive archive = new OutputArchive(new RandomAccessFile(fileName,"rw"), true);
+    try {
+      archive.readIndex();
+      archive.position = archive.validEnd;
+    } catch (IOException e) {
+      archive.file.close(); // Not an archive, left untouched
+      throw e;
+    }
+    return archive;
+  }
+  
+  // OutputArchive Constructor
+  private OutputArchive(RandomAccessFile raf, boolean w) {
+    file = raf;
+    channel = raf.getChannel();
+    writing = w;
+    position = HEADER_BYTES;
+  }
+  
+  // Key of a series in the index
+  private static String getKey(Kind kind, String station, String satellite) {
+    return kind + "/" + station + "/" + satellite;
+  }
+  
+  ////////////////////////////////////////////////////// APPEND ///////////////////////////////////////////////////////
+  // Appends numRows rows of a series in time order, values holds the columns of each row one after the other and
+  // rowBytes the logical (CSV) size of each row. Returns the number of rows skipped, already in the archive (the kept
+  // rows are moved to the front of the arrays).
+  public int append(Kind kind, String station, String satellite, long[] times, double[] values, int[] rowBytes,
+                    int numRows) throws IOException {
+    if (!writing)
+      throw new IOException("The archive was opened for scanning.");
+    
+    String key = getKey(kind, station, satellite);
+    if (!series.containsKey(key))
+      series.put(key, new Series(kind, station, satellite));
+    Series s = series.get(key);
+    
+    // Skip the rows inside the time range of a block already archived (only checked if the ranges overlap)
+    int skipped = 0;
+    List<Block> overlapping = new ArrayList<Block>();
+    if (numRows > 0)
+      for (Block b : s.blocks)
+        if (b.maxTime >= times[0] && b.minTime <= times[numRows - 1])
+          overlapping.add(b);
+    if (!overlapping.isEmpty()) {
+      int cols = kind.getColumns(), kept = 0;
+      for (int r = 0; r < numRows; r++) {
+        boolean archived = false;
+        for (Block b : overlapping)
+          archived |= times[r] >= b.minTime && times[r] <= b.maxTime;
+        if (archived)
+          continue;
+        
+        times[kept] = times[r];
+        System.arraycopy(values, r*cols, values, kept*cols, cols);
+        rowBytes[kept] = rowBytes[r];
+        kept++;
+      }
+      skipped = numRows - kept;
+      numRows = kept;
+    }
+    
+    int cols = kind.getColumns();
+    double[] row = new double[cols];
+    for (int first = 0; first < numRows; first += BLOCK_ROWS) {
+      int last = Math.min(first + BLOCK_ROWS, numRows);
+      GorillaBlock.Encoder encoder = new GorillaBlock.Encoder(cols);
+      Block block = new Block();
+      
+      for (int r = first; r < last; r++) {
+        for (int c = 0; c < cols; c++)
+          row[c] = Math.rint(values[r*cols + c]*kind.scales[c]); // Fixed decimal
+        encoder.add(times[r], row);
+        block.logicalBytes += rowBytes[r];
+      }
+      
+      long[] words = encoder.toWords();
+      ByteBuffer buf = ByteBuffer.allocate(words.length*8);
+      buf.asLongBuffer().put(words);
+      while (buf.hasRemaining())
+        channel.write(buf, position + buf.position());
+      
+      block.minTime = times[first];
+      block.maxTime = times[last - 1];
+      block.rows = last - first;
+      block.numWords = words.length;
+      block.offset = position;
+      position += words.length*8L;
+      s.blocks.add(block);
+    }
+    
+    return skipped;
+  }
+  
+  // Writes the index and then the footer, once the blocks and the index are on disk (until then the last valid footer
+  // is the previous one)
+  private void writeIndex() throws IOException {
+    OutputStream stream = Channels.newOutputStream(channel.position(position));
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+    out.writeInt(series.size());
+    for (Series s : series.values()) {
+      out.writeByte(s.kind.ordinal());
+      out.writeUTF(s.station);
+      out.writeUTF(s.satellite);
+      out.writeInt(s.blocks.size());
+      for (Block b : s.blocks) {
+        out.writeLong(b.minTime);
+        out.writeLong(b.maxTime);
+        out.writeLong(b.offset);
+        out.writeLong(b.logicalBytes);
+        out.writeInt(b.rows);
+        out.writeInt(b.numWords);
+      }
+    }
+    out.flush();
+    channel.force(false);
+    
+    out.writeLong(position);
+    out.writeInt(MAGIC);
+    out.flush();
+    channel.force(false);
+    channel.truncate(channel.position()); // Partial data of an interrupted append
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  ////////////////////////////////////////////////////// SCAN /////////////////////////////////////////////////////////
+  // Reads the index of the last valid footer (blocks of each series sorted by time), sets validEnd
+  private void readIndex() throws IOException {
+    if (file.length() < HEADER_BYTES + FOOTER_BYTES)
+      throw new IOException("Not an output archive.");
+    file.seek(0);
+    int magic = file.readInt(), version = file.readInt();
+    if (magic != MAGIC)
+      throw new IOException("Not an output archive.");
+    if (version != VERSION)
+      throw new IOException("Unsupported archive version " + version + ".");
+    
+    // The footer is normally at the end of the file, an interrupted append leaves partial data after it
+    byte[] chunk = new byte[1 << 16];
+    long end = file.length();
+    while (end >= HEADER_BYTES + FOOTER_BYTES) {
+      long start = Math.max(end - chunk.length, HEADER_BYTES + FOOTER_BYTES - 4);
+      int length = (int) (end - start);
+      file.seek(start);
+      file.readFully(chunk, 0, length);
+      ByteBuffer buf = ByteBuffer.wrap(chunk, 0, length);
+      for (int k = length - 4; k >= 0; k--) // Candidate magic at start + k
+        if (buf.getInt(k) == MAGIC && parseIndex(start + k - 8)) {
+          validEnd = start + k + 4;
+          return;
+        }
+      end = start + 3; // The candidates not checked yet end before start + 3
+    }
+    throw new IOException("Not an output archive.");
+  }
+  
+  // Parses the index of the footer at the given offset, false (and the index left empty) if it is not a valid one
+  private boolean parseIndex(long footerOffset) throws IOException {
+    file.seek(footerOffset);
+    long indexOffset = file.readLong();
+    if (indexOffset < HEADER_BYTES || indexOffset > footerOffset || footerOffset - indexOffset > Integer.MAX_VALUE)
+      return false;
+    
+    byte[] index = new byte[(int) (footerOffset - indexOffset)];
+    file.seek(indexOffset);
+    file.readFully(index);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+    try {
+      int numSeries = in.readInt();
+      for (int i = 0; i < numSeries; i++) {
+        Series s = new Series(Kind.values()[in.readByte()], in.readUTF(), in.readUTF());
+        int numBlocks = in.readInt();
+        for (int j = 0; j < numBlocks; j++) {
+          Block b = new Block();
+          b.minTime = in.readLong();
+          b.maxTime = in.readLong();
+          b.offset = in.readLong();
+          b.logicalBytes = in.readLong();
+          b.rows = in.readInt();
+          b.numWords = in.readInt();
+          s.blocks.add(b);
+        }
+        Collections.sort(s.blocks, new Comparator<Block>() {
+          public int compare(Block b1, Block b2) {
+            return Long.compare(b1.minTime, b2.minTime);
+          }
+        });
+        series.put(getKey(s.kind, s.station, s.satellite), s);
+      }
+      if (in.available() == 0)
+        return true;
+    } catch (IOException | RuntimeException e) {
+      // Not an index (e.g. a magic number inside the data of an interrupted append)
+    }
+    series.clear();
+    return false;
+  }
+  
+  // Scans the rows of a series with time in [fromTime, toTime] [ms], only the overlapping blocks are read, returns the
+  // number of rows visited (safe to call from several threads)
+  public long scan(Kind kind, String station, String satellite, long fromTime, long toTime, ArchiveVisitor visitor)
+    throws Exception {
+    Series s = series.get(getKey(kind, station, satellite));
+    if (s == null)
+      return 0;
+    
+    GorillaBlock.Decoder decoder = new GorillaBlock.Decoder(kind.getColumns());
+    double[] scales = kind.scales, row = new double[scales.length];
+    long[] words = new long[0];
+    ByteBuffer buf = null;
+    long visited = 0;
+    
+    for (Block b : s.blocks) {
+      if (b.maxTime < fromTime || b.minTime > toTime)
+        continue;
+      
+      // Read the block
+      if (words.length < b.numWords) {
+        words = new long[b.numWords];
+        buf = ByteBuffer.allocateDirect(b.numWords*8);
+      }
+      buf.clear().limit(b.numWords*8);
+      while (buf.hasRemaining())
+        if (channel.read(buf, b.offset + buf.position()) < 0)
+          throw new EOFException("Truncated archive.");
+      buf.flip();
+      buf.asLongBuffer().get(words, 0, b.numWords);
+      
+      // Decode it, skipping the rows out of the range
+      decoder.reset(words, b.rows);
+      while (decoder.next()) {
+        long time = decoder.getTime();
+        if (time < fromTime || time > toTime)
+          continue;
+        
+        double[] values = decoder.getValues();
+        for (int c = 0; c < row.length; c++)
+          row[c] = values[c]/scales[c];
+        visitor.visit(time, row);
+        visited++;
+      }
+    }
+    
+    return visited;
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  ///////////////////////////////////////////////////// GET METHODS ///////////////////////////////////////////////////
+  // Satellites with at least one series
+  public Set<String> getSatellites() {
+    Set<String> satellites = new TreeSet<String>();
+    for (Series s : series.values())
+      satellites.add(s.satellite);
+    return satellites;
+  }
+  
+  // Stations (or station masks) with access times of the given satellite
+  public Set<String> getStations(String satellite) {
+    Set<String> stations = new TreeSet<String>();
+    for (Series s : series.values())
+      if (s.kind == Kind.ACCESS && s.satellite.equals(satellite))
+        stations.add(s.station);
+    return stations;
+  }
+  
+  // Logical (CSV) bytes of the blocks of a series overlapping [fromTime, toTime] [ms]
+  public long getLogicalBytes(Kind kind, String station, String satellite, long fromTime, long toTime) {
+    Series s = series.get(getKey(kind, station, satellite));
+    long bytes = 0;
+    if (s != null)
+      for (Block b : s.blocks)
+        if (b.maxTime >= fromTime && b.minTime <= toTime)
+          bytes += b.logicalBytes;
+    return bytes;
+  }
+  
+  // Size of the archive [bytes]
+  public long getSize() throws IOException {
+    return writing ? position : file.length();
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  // Closes the archive (writing the index if it was created or appended to)
+  public void close() throws IOException {
+    if (writing && position != validEnd)
+      writeIndex();
+    file.close();
+  }
+}
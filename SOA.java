@@ -6,10 +6,14 @@
  * Last update: 2018-06-26
  * 
  * NOTE: Satellite name must NOT contain "/"
+ * NOTE: Run with "-resume" to continue from the checkpoints of a previous (interrupted) run
+ * NOTE: Run with "-mode <modes>" to choose the variants of the pipeline (see Mode), e.g. "-mode sweep+aggregate"
+ * NOTE: The pipeline itself is in run(), also used by SOABenchmark (see Mode for the variants of the pipeline)
  */
 
 // Orekit Libraries
 import org.orekit.frames.*;
+import org.orekit.errors.*;
 import org.orekit.time.*;
 import org.orekit.data.*;
 import org.orekit.orbits.*;
@@ -31,6 +35,60 @@ import java.util.concurrent.*;
 
 // SOA Class
 public class SOA {
+  // Catalog: name, line 1, line 2
+  static final String tleData[] = {"GAOFEN 6",
+    "1 43484U 18048A   18175.64917903  .00000090  00000-0  20207-4 0  9999",
+    "2 43484  98.0511 250.6242 0011130 204.4757 155.5967 14.76872906  3310",
+    "LUOJIA-1 01",
+    "1 43485U 18048B   18176.19543172  .00000162  00000-0  30774-4 0  9994",
+    "2 43485  98.0513 251.1590 0011141 192.8922 167.2009 14.76430878  3394",
+    "CZ-2D R_B",
+    "1 43486U 18048C   18176.17050062  .00000209  00000-0  36083-4 0  9995",
+    "2 43486  97.9294 250.8648 0015615 331.5140  28.5220 14.78039816  3408",
+    "CZ-2D DEB",
+    "1 43487U 18048D   18175.74559567  .00000300  00000-0  52004-4 0  9995",
+    "2 43487  97.9105 250.2877 0034493 178.3278 181.8048 14.74824729  3325",
+    "FALCON 9 R_B",
+    "1 43489U 18049B   18172.07707761  .00000272  00000-0  95130-4 0  9997",
+    "2 43489  26.0812 159.7201 8142749 173.6409 215.6535  1.28104506   227",
+    "CZ-2D DEB",
+    "1 43490U 18048E   18175.74350433  .00000158  00000-0  31385-4 0  9990",
+    "2 43490  98.1787 250.9844 0034951 179.7356 180.3876 14.74953045  3046",
+    "CZ-3A R_B",
+    "1 43492U 18050B   18175.97003206 -.00000252  00000-0  00000+0 0  9994",
+    "2 43492  24.6518  73.7869 7287125 193.6216 123.4239  2.23327886   443",
+    "SOYUZ-MS 09",
+    "1 43493U 18051A   18175.61067381  .00003886  00000-0  66303-4 0  9999",
+    "2 43493  51.6384 341.7075 0003783 223.8232 226.4905 15.53963728  2832",
+    "COSMOS 2527 [GLONASS-M]",
+    "1 43508U 18053A   18174.20839013  .00000096  00000-0  00000+0 0  9998",
+    "2 43508  64.8199 171.4822 0006440 231.7022 228.2698  2.12997363   138",
+    "FREGAT R_B",
+    "1 43509U 18053B   18175.14346324  .00000091  00000-0  10000-3 0  9991",
+    "2 43509  64.8777 171.3753 0090117 122.3110 238.5828  2.09216731   150",
+    "REMOVEDEBRIS",
+    "1 43510U 98067NT  18176.04402727  .00004239  00000-0  70628-4 0  9997",
+    "2 43510  51.6415 339.5336 0003442 223.8147 136.2571 15.54371761   701"
+  };
+  
+  // Variants of the pipeline, any combination of them can be run except STORE with SWEEP or AGGREGATE
+  public enum Mode {
+    STORE, // Propagate once into an ephemeris store (see EphemerisStore), the analyses then read the store
+    SWEEP, // Access times for several elevation masks from a single run (one folder per mask)
+    AGGREGATE, // Only constellation level results (see ConstellationAggregator), no per satellite files
+    NUMERICAL // High fidelity (numerical) propagation instead of TLE (see ForceModelData)
+  }
+  
+  // Parses a combination of modes, e.g. "sweep+aggregate" ("default" or "" for none)
+  static Set<Mode> parseModes(String modes) {
+    Set<Mode> set = EnumSet.noneOf(Mode.class);
+    for (String mode : modes.split("\\+"))
+      if (!mode.trim().isEmpty() && !mode.trim().equalsIgnoreCase("default"))
+        set.add(Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT)));
+    if (set.contains(Mode.STORE) && (set.contains(Mode.SWEEP) || set.contains(Mode.AGGREGATE)))
+      throw new IllegalArgumentException("The STORE mode cannot be combined with SWEEP nor AGGREGATE.");
+    return set;
+  }
   
   // Main
   public static void main(String args[]) {
@@ -43,124 +101,29 @@ public class SOA {
       DataProvidersManager manager = DataProvidersManager.getInstance();
       manager.addProvider(new DirectoryCrawler(orekitData));
       
-      // Set (and create if needed) the output folders
-      String outPath = "OutputFolder";
-      String sunPath = outPath + "/SunAngles",
-        earthPath = outPath + "/EarthAngles",
-        accessPath = outPath + "/AccessTimes";
-      
-      File sunDir = new File(sunPath),
-        earthDir = new File(earthPath),
-        accessDir = new File(accessPath);
-      
-      if (!sunDir.exists())
-        sunDir.mkdirs(); // Also creates the output folder
-      if (!earthDir.exists())
-        earthDir.mkdir();
-      if (!accessDir.exists())
-        accessDir.mkdir();
-      
-      // GROUND STATION 1
-      System.out.println("Setting up ground station 1..."); // Progress indicator
-      double longitude = Math.toRadians(7.84965); // Freiburg longitude
-      double latitude = Math.toRadians(47.6652); // Freiburg latitude
-      double altitude = 325.036; // [m]
-      GeodeticPoint stationFreiburg = new GeodeticPoint(latitude, longitude, altitude); // Create location point
-      // Topocentric frame for the ground station.
-      Frame earthFrame = FramesFactory.getITRF(IERSConventions.IERS_2010, true);
-      BodyShape earth = new OneAxisEllipsoid(Constants.WGS84_EARTH_EQUATORIAL_RADIUS,
-                                             Constants.WGS84_EARTH_FLATTENING,
-                                             earthFrame); // Shape of the Earth
-      TopocentricFrame stationFrameFreiburg = new TopocentricFrame(earth, stationFreiburg, "StationFreiburg");
-      
-      // GROUND STATION 2
-      System.out.println("Setting up ground station 2..."); // Progress indicator
-      longitude = Math.toRadians(-7.84965); // 
-      latitude = Math.toRadians(-47.6652); // 
-      altitude = 325.036; // [m]
-      GeodeticPoint stationUnknown = new GeodeticPoint(latitude, longitude, altitude); // Create location point
-      // Topocentric frame for the ground station.
-      TopocentricFrame stationFrameUnknown = new TopocentricFrame(earth, stationUnknown, "StationUnknown");
-      
-      File sta1Dir = new File(accessPath + "/" + stationFrameFreiburg.getName()),
-        sta2Dir = new File(accessPath + "/" + stationFrameUnknown.getName());
-      
-      if (!sta1Dir.exists())
-        sta1Dir.mkdir();
-      if (!sta2Dir.exists())
-        sta2Dir.mkdir();
-      
-      String tleData[] = {"GAOFEN 6",
-        "1 43484U 18048A   18175.64917903  .00000090  00000-0  20207-4 0  9999",
-        "2 43484  98.0511 250.6242 0011130 204.4757 155.5967 14.76872906  3310",
-        "LUOJIA-1 01",
-        "1 43485U 18048B   18176.19543172  .00000162  00000-0  30774-4 0  9994",
-        "2 43485  98.0513 251.1590 0011141 192.8922 167.2009 14.76430878  3394",
-        "CZ-2D R_B",
-        "1 43486U 18048C   18176.17050062  .00000209  00000-0  36083-4 0  9995",
-        "2 43486  97.9294 250.8648 0015615 331.5140  28.5220 14.78039816  3408",
-        "CZ-2D DEB",
-        "1 43487U 18048D   18175.74559567  .00000300  00000-0  52004-4 0  9995",
-        "2 43487  97.9105 250.2877 0034493 178.3278 181.8048 14.74824729  3325",
-        "FALCON 9 R_B",
-        "1 43489U 18049B   18172.07707761  .00000272  00000-0  95130-4 0  9997",
-        "2 43489  26.0812 159.7201 8142749 173.6409 215.6535  1.28104506   227",
-        "CZ-2D DEB",
-        "1 43490U 18048E   18175.74350433  .00000158  00000-0  31385-4 0  9990",
-        "2 43490  98.1787 250.9844 0034951 179.7356 180.3876 14.74953045  3046",
-        "CZ-3A R_B",
-        "1 43492U 18050B   18175.97003206 -.00000252  00000-0  00000+0 0  9994",
-        "2 43492  24.6518  73.7869 7287125 193.6216 123.4239  2.23327886   443",
-        "SOYUZ-MS 09",
-        "1 43493U 18051A   18175.61067381  .00003886  00000-0  66303-4 0  9999",
-        "2 43493  51.6384 341.7075 0003783 223.8232 226.4905 15.53963728  2832",
-        "COSMOS 2527 [GLONASS-M]",
-        "1 43508U 18053A   18174.20839013  .00000096  00000-0  00000+0 0  9998",
-        "2 43508  64.8199 171.4822 0006440 231.7022 228.2698  2.12997363   138",
-        "FREGAT R_B",
-        "1 43509U 18053B   18175.14346324  .00000091  00000-0  10000-3 0  9991",
-        "2 43509  64.8777 171.3753 0090117 122.3110 238.5828  2.09216731   150",
-        "REMOVEDEBRIS",
-        "1 43510U 98067NT  18176.04402727  .00004239  00000-0  70628-4 0  9997",
-        "2 43510  51.6415 339.5336 0003442 223.8147 136.2571 15.54371761   701"
-      };
+      // Arguments: checkpoints and variants of the pipeline
+      boolean resume = false;
+      Set<Mode> modes = EnumSet.noneOf(Mode.class);
+      for (int i = 0; i < args.length; i++) {
+        if (args[i].equals("-resume"))
+          resume = true;
+        else if (args[i].equals("-mode") && i + 1 < args.length)
+          modes = parseModes(args[++i]);
+        else
+          throw new IllegalArgumentException("Usage: SOA [-resume] [-mode store|sweep|aggregate|numerical[+...]]");
+      }
       
-      Map<Integer,Satellite> satCollection = new HashMap<Integer,Satellite>();
+      // GROUND STATIONS
+      TopocentricFrame stations[] = getStations();
       
       // Set the propagators
       TimeScale utc = TimeScalesFactory.getUTC();
       AbsoluteDate initialDate = new AbsoluteDate(2021, 01, 01, 00, 00, 00.000, utc);
       AbsoluteDate finalDate = initialDate.shiftedBy(1.0*24.0*60.0*60.0);
+      double stepT = 60.0; // [s]
       
-      // Add event detectors
-      double maxCheck  = 60.0;
-      double threshold =  0.001;
-      double elevationDeg = 10.0; // [deg]
-      
-      int numOfSats = tleData.length/3;
-      
-      ExecutorService pool = Executors.newFixedThreadPool(numOfSats); // Number of elements in the map
-      
-      for (int i = 0; i < numOfSats; i++) {
-        satCollection.put(i, new Satellite());
-
-        satCollection.get(i).setTLEPropagator(tleData[i*3+1],tleData[i*3+2],tleData[i*3]);
-        satCollection.get(i).setAll(initialDate, finalDate, 60.0);
-        satCollection.get(i).setElevationDetector(stationFrameFreiburg, maxCheck, threshold, elevationDeg, accessPath);
-        satCollection.get(i).setElevationDetector(stationFrameUnknown, maxCheck, threshold, elevationDeg, accessPath);
-        satCollection.get(i).setSunPath(sunPath);
-        satCollection.get(i).setEarthPath(earthPath);
-        
-        pool.execute(satCollection.get(i));
-      }
-      
-      pool.shutdown(); // Keeps running current tasks until they finish, disable new tasks from being submitted
-      
-      System.out.println("Waiting for execution to finish...");
-      
-      while (!pool.isTerminated()) {
-        
-      }
+      run(tleData, stations, initialDate, finalDate, stepT, "OutputFolder", tleData.length/3, resume, // One thread per satellite
+          modes);
       
       endTime = System.currentTimeMillis();
       System.out.println("Done.");
@@ -169,4 +132,176 @@ public class SOA {
       System.out.println(e);
     }
   }
+  
+  // Runs the whole pipeline (propagation, angles and access times) for a catalog (name, line 1, line 2) and writes
+  // the results into outPath with the given variants of the pipeline (see Mode), the Orekit data must be configured
+  // before
+  static void run(String tles[], TopocentricFrame stations[], AbsoluteDate initialDate, AbsoluteDate finalDate,
+                  double stepT, String outPath, int threads, boolean resume, Set<Mode> modes) throws Exception {
+    if (modes.contains(Mode.STORE) && (modes.contains(Mode.SWEEP) || modes.contains(Mode.AGGREGATE)))
+      throw new IllegalArgumentException("The STORE mode cannot be combined with SWEEP nor AGGREGATE.");
+    
+    // Aggregation: only constellation level results (see ConstellationAggregator), no per satellite files nor
+    // checkpoints (the aggregates are kept in memory, so the run cannot be resumed)
+    boolean aggregate = modes.contains(Mode.AGGREGATE);
+    ConstellationAggregator aggregator = null;
+    
+    // Set (and create if needed) the output folders
+    String sunPath = outPath + "/SunAngles",
+      earthPath = outPath + "/EarthAngles",
+      accessPath = outPath + "/AccessTimes",
+      checkpointPath = outPath + "/Checkpoints",
+      aggregatePath = outPath + "/Aggregates";
+    
+    File sunDir = new File(sunPath),
+      earthDir = new File(earthPath),
+      accessDir = new File(accessPath),
+      checkpointDir = new File(checkpointPath);
+    
+    if (!aggregate) {
+      if (!sunDir.exists())
+        sunDir.mkdirs(); // Also creates the output folder
+      if (!earthDir.exists())
+        earthDir.mkdir();
+      if (!accessDir.exists())
+        accessDir.mkdir();
+      if (!checkpointDir.exists())
+        checkpointDir.mkdir();
+      
+      for (TopocentricFrame station : stations) {
+        File staDir = new File(accessPath + "/" + station.getName());
+        if (!staDir.exists())
+          staDir.mkdir();
+      }
+    } else {
+      aggregator = new ConstellationAggregator(initialDate, finalDate, stepT);
+    }
+    
+    // Checkpoints
+    double checkpointPeriod = 60.0; // [s] of wall time
+    
+    Map<Integer,Satellite> satCollection = new HashMap<Integer,Satellite>();
+    
+    // Add event detectors
+    double maxCheck  = 60.0;
+    double threshold =  0.001;
+    double elevationDeg = 10.0; // [deg]
+    
+    // Elevation mask sweep: access times for every mask from a single run (one folder per mask)
+    boolean maskSweep = modes.contains(Mode.SWEEP);
+    List<Double> elevationMasks = Arrays.asList(5.0, 10.0, 15.0, 20.0); // [deg]
+    
+    // Propagate once: the catalog is propagated into an ephemeris store, then the analyses read the store
+    boolean propagateOnce = modes.contains(Mode.STORE);
+    EphemerisStore ephemerisStore = null;
+    
+    // High fidelity (numerical) propagation, force model data is loaded once and shared by all satellites
+    boolean highFidelity = modes.contains(Mode.NUMERICAL);
+    ForceModelData forceData = null;
+    if (highFidelity) {
+      System.out.println("Loading force model data..."); // Progress indicator
+      forceData = new ForceModelData(20, 20, 0, 0); // Gravity field 20x20, no ocean tides
+    }
+    double mass = 100.0, crossSection = 1.0, dragCoeff = 2.2; // [kg], [m^2], []
+    
+    int numOfSats = tles.length/3;
+    
+    if (propagateOnce) {
+      String satNames[] = new String[numOfSats];
+      for (int i = 0; i < numOfSats; i++)
+        satNames[i] = tles[i*3];
+      int numSteps = (int) Math.floor(finalDate.durationFrom(initialDate)/stepT) + 1;
+      ephemerisStore = EphemerisStore.create(outPath + "/Ephemeris.bin", satNames, initialDate, stepT, numSteps);
+    }
+    
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    
+    for (int i = 0; i < numOfSats; i++) {
+      satCollection.put(i, new Satellite());
+
+      if (highFidelity)
+        satCollection.get(i).setNumericalPropagator(tles[i*3+1],tles[i*3+2],tles[i*3],forceData,
+                                                    mass,crossSection,dragCoeff);
+      else
+        satCollection.get(i).setTLEPropagator(tles[i*3+1],tles[i*3+2],tles[i*3]);
+      satCollection.get(i).setAll(initialDate, finalDate, stepT);
+      if (propagateOnce) {
+        // Propagation only, the analyses run on the store afterwards
+        satCollection.get(i).setEphemerisStore(ephemerisStore, i);
+        satCollection.get(i).printSunAngles(false);
+        satCollection.get(i).printEarthAngles(false);
+      } else {
+        if (aggregate) {
+          // Everything is reduced into the aggregator, printers off before the detectors (no folders either)
+          satCollection.get(i).printSunAngles(false);
+          satCollection.get(i).printEarthAngles(false);
+          satCollection.get(i).printAccessTimes(false);
+          satCollection.get(i).setAggregator(aggregator);
+        } else {
+          satCollection.get(i).setSunPath(sunPath);
+          satCollection.get(i).setEarthPath(earthPath);
+        }
+        for (TopocentricFrame station : stations) {
+          if (maskSweep)
+            satCollection.get(i).setElevationDetector(station, maxCheck, threshold, elevationMasks, accessPath);
+          else
+            satCollection.get(i).setElevationDetector(station, maxCheck, threshold, elevationDeg, accessPath);
+        }
+      }
+      if (!aggregate)
+        satCollection.get(i).setCheckpoint(checkpointPath, checkpointPeriod, resume);
+      
+      pool.execute(satCollection.get(i));
+    }
+    
+    pool.shutdown(); // Keeps running current tasks until they finish, disable new tasks from being submitted
+    
+    System.out.println("Waiting for execution to finish...");
+    
+    pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS); // Waits without using CPU
+    
+    if (propagateOnce) {
+      // Analysis passes over the store, no propagation involved
+      System.out.println("Analyzing ephemeris store...");
+      List<EphemerisAnalysis> analyses = new ArrayList<EphemerisAnalysis>();
+      analyses.add(new AnglesAnalysis(sunPath, earthPath));
+      for (TopocentricFrame station : stations)
+        analyses.add(new AccessAnalysis(station, threshold, elevationDeg, accessPath));
+      ephemerisStore.analyze(analyses, Runtime.getRuntime().availableProcessors());
+      ephemerisStore.close();
+    }
+    
+    if (aggregate) {
+      // Merge the partial results of every thread
+      System.out.println("Writing aggregates...");
+      aggregator.writeResults(aggregatePath);
+    }
+  }
+  
+  // Sets up the ground stations
+  static TopocentricFrame[] getStations() throws OrekitException {
+    // GROUND STATION 1
+    System.out.println("Setting up ground station 1..."); // Progress indicator
+    double longitude = Math.toRadians(7.84965); // Freiburg longitude
+    double latitude = Math.toRadians(47.6652); // Freiburg latitude
+    double altitude = 325.036; // [m]
+    GeodeticPoint stationFreiburg = new GeodeticPoint(latitude, longitude, altitude); // Create location point
+    // Topocentric frame for the ground station.
+    Frame earthFrame = FramesFactory.getITRF(IERSConventions.IERS_2010, true);
+    BodyShape earth = new OneAxisEllipsoid(Constants.WGS84_EARTH_EQUATORIAL_RADIUS,
+                                           Constants.WGS84_EARTH_FLATTENING,
+                                           earthFrame); // Shape of the Earth
+    TopocentricFrame stationFrameFreiburg = new TopocentricFrame(earth, stationFreiburg, "StationFreiburg");
+    
+    // GROUND STATION 2
+    System.out.println("Setting up ground station 2..."); // Progress indicator
+    longitude = Math.toRadians(-7.84965); // 
+    latitude = Math.toRadians(-47.6652); // 
+    altitude = 325.036; // [m]
+    GeodeticPoint stationUnknown = new GeodeticPoint(latitude, longitude, altitude); // Create location point
+    // Topocentric frame for the ground station.
+    TopocentricFrame stationFrameUnknown = new TopocentricFrame(earth, stationUnknown, "StationUnknown");
+    
+    return new TopocentricFrame[] {stationFrameFreiburg, stationFrameUnknown};
+  }
 }
\ No newline at end of file
@@ -0,0 +1,320 @@
+/* Back-end of Satellite Orbit Analizer: SOAArchive (Main)
+ * Command line tool for the compressed output archives (see OutputArchive)
+ *
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ *
+ * Commands:
+ * - import <archive> <output folder>...: archives the SunAngles, EarthAngles and AccessTimes CSVs of the folders
+ *   (a new archive, replaces an existing one)
+ * - append <archive> <output folder>...: adds the CSVs of the folders to an existing archive (e.g. the daily run)
+ * - export <archive> <output folder>: writes the archived series back as CSVs (same layout and format as Satellite)
+ * - scan <archive> <SUN|EARTH|ACCESS> <satellite> [station] [from] [to]: prints the rows of one series in a time range
+ *   (dates as in the CSVs, e.g. "1 Jan 2021 06:00:00.000")
+ * - bench <archive> [threads]: scans every series and prints the compression ratio and the scan speed
+ *
+ * NOTE: The CSV dates are read as UTC without leap seconds (a second 60 is stored as the next minute)
+ * NOTE: Rows already in the archive are skipped (e.g. the same folder imported or appended twice, see OutputArchive)
+ */
+
+// Java Libraries
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+
+// SOAArchive Class
+public class SOAArchive {
+  // Defaults and Other Finals
+  private static final Locale loc = new Locale("EN","US");
+  private static final String MONTHS[] = {"Jan","Feb","Mar","Apr","May","Jun","Jul","Aug","Sep","Oct","Nov","Dec"};
+  private static final String SUN_SUFFIX = "_sunAngles.csv", EARTH_SUFFIX = "_earthAngles.csv";
+  private static final String SUN_HEADER = "\"Time (UTCG)\",\"Azimuth (deg)\",\"Elevation (deg)\",\"Subsolar (deg)\"",
+    EARTH_HEADER = "\"Time (UTCG)\",\"Azimuth (deg)\",\"Elevation (deg)\"",
+    ACCESS_HEADER = "\"Access\",\"Start Time (UTCG)\",\"Stop Time (UTCG)\",\"Duration (sec)\"";
+  
+  // Main
+  public static void main(String args[]) {
+    try {
+      if (args.length >= 3 && args[0].equals("import")) {
+        importFolders(args[1], Arrays.copyOfRange(args, 2, args.length), false);
+      } else if (args.length >= 3 && args[0].equals("append")) {
+        importFolders(args[1], Arrays.copyOfRange(args, 2, args.length), true);
+      } else if (args.length == 3 && args[0].equals("export")) {
+        exportFolder(args[1], args[2]);
+      } else if (args.length >= 4 && args[0].equals("scan")) {
+        OutputArchive.Kind kind = OutputArchive.Kind.valueOf(args[2]);
+        String station = (kind == OutputArchive.Kind.ACCESS && args.length > 4) ? args[4] : "";
+        int next = (kind == OutputArchive.Kind.ACCESS) ? 5 : 4;
+        long from = (args.length > next) ? parseTime(args[next]) : Long.MIN_VALUE;
+        long to = (args.length > next + 1) ? parseTime(args[next + 1]) : Long.MAX_VALUE;
+        scan(args[1], kind, station, args[3], from, to);
+      } else if (args.length >= 2 && args[0].equals("bench")) {
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        bench(args[1], threads);
+      } else {
+        System.out.println("Usage: SOAArchive import <archive> <output folder>...");
+        System.out.println("       SOAArchive append <archive> <output folder>...");
+        System.out.println("       SOAArchive export <archive> <output folder>");
+        System.out.println("       SOAArchive scan <archive> <SUN|EARTH|ACCESS> <satellite> [station] [from] [to]");
+        System.out.println("       SOAArchive bench <archive> [threads]");
+      }
+    } catch (Exception e) {
+      System.out.println(e);
+    }
+  }
+  
+  ////////////////////////////////////////////////////// IMPORT ///////////////////////////////////////////////////////
+  // Archives the CSVs of the given output folders, into a new archive or appended to an existing one
+  private static void importFolders(String archiveName, String folders[], boolean append) throws Exception {
+    long startTime = System.currentTimeMillis();
+    long csvBytes = 0;
+    int numFiles = 0, skipped = 0;
+    
+    long sizeBefore = append ? new File(archiveName).length() : 0;
+    OutputArchive archive = append ? OutputArchive.openForAppend(archiveName) : OutputArchive.create(archiveName);
+    for (String folder : folders) {
+      System.out.println("Importing " + folder + "..."); // Progress indicator
+      
+      for (Path p : listCSVs(Paths.get(folder, "SunAngles"))) {
+        String name = p.getFileName().toString();
+        if (name.endsWith(SUN_SUFFIX)) {
+          skipped += importFile(archive, OutputArchive.Kind.SUN, "",
+                                name.substring(0, name.length() - SUN_SUFFIX.length()), p);
+          csvBytes += Files.size(p);
+          numFiles++;
+        }
+      }
+      for (Path p : listCSVs(Paths.get(folder, "EarthAngles"))) {
+        String name = p.getFileName().toString();
+        if (name.endsWith(EARTH_SUFFIX)) {
+          skipped += importFile(archive, OutputArchive.Kind.EARTH, "",
+                                name.substring(0, name.length() - EARTH_SUFFIX.length()), p);
+          csvBytes += Files.size(p);
+          numFiles++;
+        }
+      }
+      // Access times: the station is the folder relative to AccessTimes (station or station/mask)
+      Path accessPath = Paths.get(folder, "AccessTimes");
+      for (Path p : listCSVs(accessPath)) {
+        String station = accessPath.relativize(p.getParent()).toString().replace(File.separatorChar, '/');
+        String name = p.getFileName().toString();
+        skipped += importFile(archive, OutputArchive.Kind.ACCESS, station, name.substring(0, name.length() - 4), p);
+        csvBytes += Files.size(p);
+        numFiles++;
+      }
+    }
+    archive.close();
+    
+    if (skipped > 0)
+      System.out.println("Skipped " + skipped + " rows already in the archive.");
+    
+    // Ratio of the added bytes (an append writes a new index, so it is billed for its growth)
+    long archiveBytes = new File(archiveName).length() - sizeBefore;
+    if (archiveBytes == 0) {
+      System.out.println("Imported " + numFiles + " files, nothing new to archive.");
+      return;
+    }
+    System.out.println(String.format(loc,"Imported %d files in %.1f s: %d CSV bytes, %d archive bytes (%.2fx)",numFiles,
+                                     (System.currentTimeMillis() - startTime)/1000.0,csvBytes,archiveBytes,
+                                     (double) csvBytes/archiveBytes));
+  }
+  
+  // CSV files under a folder (recursively, sorted), empty if the folder does not exist
+  private static List<Path> listCSVs(Path folder) throws IOException {
+    if (!Files.isDirectory(folder))
+      return new ArrayList<Path>();
+    
+    try (Stream<Path> files = Files.walk(folder)) {
+      return files.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".csv")).sorted()
+        .collect(Collectors.toList());
+    }
+  }
+  
+  // Archives one CSV file, returns the number of rows skipped (already in the archive)
+  private static int importFile(OutputArchive archive, OutputArchive.Kind kind, String station, String satellite,
+                                 Path p) throws Exception {
+    List<String> lines = Files.readAllLines(p, StandardCharsets.UTF_8);
+    int cols = kind.getColumns(), numRows = 0;
+    long[] times = new long[lines.size()];
+    double[] values = new double[lines.size()*cols];
+    int[] rowBytes = new int[lines.size()];
+    
+    for (int i = 1; i < lines.size(); i++) { // Skip the header
+      String fields[] = lines.get(i).split(",");
+      if (kind == OutputArchive.Kind.ACCESS) {
+        // Access, start, stop, duration
+        times[numRows] = parseTime(fields[1]);
+        values[numRows*cols] = Double.parseDouble(fields[0]);
+        values[numRows*cols + 1] = (parseTime(fields[2]) - times[numRows])/1000.0;
+        values[numRows*cols + 2] = Double.parseDouble(fields[3]);
+      } else {
+        times[numRows] = parseTime(fields[0]);
+        for (int c = 0; c < cols; c++)
+          values[numRows*cols + c] = Double.parseDouble(fields[c + 1]);
+      }
+      rowBytes[numRows] = lines.get(i).length() + 1; // With the line break
+      numRows++;
+    }
+    
+    return archive.append(kind, station, satellite, times, values, rowBytes, numRows);
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  ////////////////////////////////////////////////////// EXPORT ///////////////////////////////////////////////////////
+  // Writes every archived series back as CSVs into the given output folder
+  private static void exportFolder(String archiveName, String folder) throws Exception {
+    OutputArchive archive = OutputArchive.open(archiveName);
+    
+    for (String satellite : archive.getSatellites()) {
+      exportSeries(archive, OutputArchive.Kind.SUN, "", satellite, folder + "/SunAngles/" + satellite + SUN_SUFFIX);
+      exportSeries(archive, OutputArchive.Kind.EARTH, "", satellite,
+                   folder + "/EarthAngles/" + satellite + EARTH_SUFFIX);
+      for (String station : archive.getStations(satellite))
+        exportSeries(archive, OutputArchive.Kind.ACCESS, station, satellite,
+                     folder + "/AccessTimes/" + station + "/" + satellite + ".csv");
+    }
+    
+    archive.close();
+  }
+  
+  // Writes one series as a CSV (nothing if the series is empty)
+  private static void exportSeries(OutputArchive archive, OutputArchive.Kind kind, String station, String satellite,
+                                   String fileName) throws Exception {
+    StringWriter sw = new StringWriter();
+    final PrintWriter printer = new PrintWriter(sw);
+    final OutputArchive.Kind k = kind;
+    long rows = archive.scan(kind, station, satellite, Long.MIN_VALUE, Long.MAX_VALUE, new ArchiveVisitor() {
+      public void visit(long time, double[] values) {
+        printer.print(formatRow(k, time, values));
+      }
+    });
+    printer.close();
+    
+    if (rows == 0 && kind != OutputArchive.Kind.ACCESS)
+      return;
+    
+    new File(fileName).getParentFile().mkdirs();
+    PrintWriter out = new PrintWriter(fileName,"UTF-8");
+    out.println(kind == OutputArchive.Kind.SUN ? SUN_HEADER : kind == OutputArchive.Kind.EARTH ? EARTH_HEADER
+                : ACCESS_HEADER);
+    out.print(sw.toString());
+    out.close();
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  /////////////////////////////////////////////////////// SCAN ////////////////////////////////////////////////////////
+  // Prints the rows of one series in [from, to] [ms]
+  private static void scan(String archiveName, final OutputArchive.Kind kind, String station, String satellite,
+                           long from, long to) throws Exception {
+    OutputArchive archive = OutputArchive.open(archiveName);
+    final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8")));
+    
+    archive.scan(kind, station, satellite, from, to, new ArchiveVisitor() {
+      public void visit(long time, double[] values) {
+        out.print(formatRow(kind, time, values));
+      }
+    });
+    
+    out.flush();
+    archive.close();
+  }
+  
+  // Scans every series (in parallel) and prints the compression ratio and the scan speed of the logical (CSV) data
+  private static void bench(String archiveName, int threads) throws Exception {
+    final OutputArchive archive = OutputArchive.open(archiveName);
+    
+    // Every series of the archive
+    final List<Object[]> allSeries = new ArrayList<Object[]>(); // {kind, station, satellite}
+    long logicalBytes = 0;
+    for (String satellite : archive.getSatellites()) {
+      allSeries.add(new Object[] {OutputArchive.Kind.SUN, "", satellite});
+      allSeries.add(new Object[] {OutputArchive.Kind.EARTH, "", satellite});
+      for (String station : archive.getStations(satellite))
+        allSeries.add(new Object[] {OutputArchive.Kind.ACCESS, station, satellite});
+    }
+    for (Object[] s : allSeries)
+      logicalBytes += archive.getLogicalBytes((OutputArchive.Kind) s[0], (String) s[1], (String) s[2],
+                                              Long.MIN_VALUE, Long.MAX_VALUE);
+    
+    System.out.println(String.format(loc,"%d series, %d logical bytes, %d archive bytes (%.2fx)",allSeries.size(),
+                                     logicalBytes,archive.getSize(),(double) logicalBytes/archive.getSize()));
+    
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    for (int run = 1; run <= 5; run++) { // The first runs warm up the JIT
+      final AtomicLong rows = new AtomicLong();
+      final DoubleAdder checksum = new DoubleAdder(); // Keeps the values alive
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for (int t = 0; t < threads; t++) {
+        final int first = t;
+        final int numThreads = threads;
+        tasks.add(new Callable<Void>() {
+          public Void call() throws Exception {
+            final double[] sum = new double[1];
+            for (int i = first; i < allSeries.size(); i += numThreads) {
+              Object[] s = allSeries.get(i);
+              rows.addAndGet(archive.scan((OutputArchive.Kind) s[0], (String) s[1], (String) s[2], Long.MIN_VALUE,
+                                          Long.MAX_VALUE, new ArchiveVisitor() {
+                public void visit(long time, double[] values) {
+                  sum[0] += values[0];
+                }
+              }));
+            }
+            checksum.add(sum[0]);
+            return null;
+          }
+        });
+      }
+      
+      long start = System.nanoTime();
+      pool.invokeAll(tasks);
+      double seconds = (System.nanoTime() - start)/1.0e9;
+      
+      System.out.println(String.format(loc,"Run %d: %d rows in %.3f s, %.1f Mrows/s, %.0f MB/s of logical data " +
+                                       "(%d threads, checksum %.1f)",run,rows.get(),seconds,rows.get()/seconds/1.0e6,
+                                       logicalBytes/seconds/1.0e6,threads,checksum.sum()));
+    }
+    pool.shutdown();
+    
+    archive.close();
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  // Formats a row as in the CSVs of Satellite
+  private static String formatRow(OutputArchive.Kind kind, long time, double[] values) {
+    switch (kind) {
+      case SUN:
+        return String.format(loc,"%s,%07.3f,%07.3f,%07.3f\n",formatTime(time),values[0],values[1],values[2]);
+      case EARTH:
+        return String.format(loc,"%s,%07.3f,%07.3f\n",formatTime(time),values[0],values[1]);
+      default:
+        long stop = time + Math.round(values[1]*1000.0);
+        return String.format(loc,"%d,%s,%s,%07.3f\n",(long) values[0],formatTime(time),formatTime(stop),values[2]);
+    }
+  }
+  
+  // Parses a CSV date ("1 Jan 2021 06:00:00.000", UTC) [ms from 1970-01-01]
+  static long parseTime(String s) {
+    String parts[] = s.trim().split(" ");
+    int month = Arrays.asList(MONTHS).indexOf(parts[1]) + 1;
+    long day = LocalDate.of(Integer.parseInt(parts[2]), month, Integer.parseInt(parts[0])).toEpochDay();
+    String hms[] = parts[3].split(":");
+    
+    return day*86400000L + Integer.parseInt(hms[0])*3600000L + Integer.parseInt(hms[1])*60000L +
+      Math.round(Double.parseDouble(hms[2])*1000.0);
+  }
+  
+  // Formats a date [ms from 1970-01-01] as in the CSVs
+  static String formatTime(long time) {
+    long day = Math.floorDiv(time, 86400000L);
+    long ms = time - day*86400000L;
+    LocalDate date = LocalDate.ofEpochDay(day);
+    
+    return String.format(loc,"%d %s %d %02d:%02d:%06.3f",date.getDayOfMonth(),MONTHS[date.getMonthValue() - 1],
+                         date.getYear(),ms/3600000L,(ms/60000L) % 60,(ms % 60000L)/1000.0);
+  }
+}
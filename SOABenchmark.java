@@ -0,0 +1,300 @@
+/* Back-end of Satellite Orbit Analizer: SOABenchmark (Main)
+ * Scaling benchmark: runs the full SOA pipeline (see SOA.run) over synthetic catalogs (see SyntheticCatalog) and
+ * writes the resource usage of every scenario to a CSV report, so scaling regressions can be compared between runs
+ *
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ *
+ * Scenarios: every combination of the given modes, sizes, station counts and step sizes
+ * Measurements per scenario:
+ * - Wall time [s], process CPU time [s] and CPU utilization (CPU time over wall time and cores)
+ * - Peak heap [MB] (sum of the peaks of the heap memory pools, reset before each scenario)
+ * - GC time [s] and number of collections
+ * - Open file descriptors: peak (sampled every SAMPLE_PERIOD) and after the scenario (leaks)
+ * - Output bytes and files
+ *
+ * NOTE: Usage: SOABenchmark [-mode default] [-sizes 100,1000,10000,25000] [-mix 70,10,10,10] [-stations 2]
+ *              [-steps 60] [-days 1] [-threads cores] [-seed 1] [-out BenchmarkOutput]
+ *       A mode is "default" or a combination of store, sweep, aggregate and numerical joined by "+" (see SOA.Mode),
+ *       e.g. -mode default,store,sweep+aggregate. The mix gives the weights of LEO, MEO, GEO and HEO objects, modes,
+ *       sizes, stations and steps accept lists
+ * NOTE: Every scenario starts from an empty output folder (its previous results and checkpoints are deleted)
+ * NOTE: A small warm-up scenario runs first (not reported), so the JIT compilation is not billed to the first one
+ * NOTE: The first two stations are the ones of SOA, extra stations are spread over latitudes -60 to 60 deg
+ */
+
+// Orekit Libraries
+import org.orekit.frames.*;
+import org.orekit.time.*;
+import org.orekit.data.*;
+import org.orekit.bodies.*;
+import org.orekit.utils.*;
+
+// Java Libraries
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+// SOABenchmark Class
+public class SOABenchmark {
+  // Defaults and Other Finals
+  private static final Locale loc = new Locale("EN","US");
+  private static final long SAMPLE_PERIOD = 100; // [ms]
+  private static final int WARMUP_SIZE = 20; // [objects]
+  private static final String REPORT_HEADER = "scenario,mode,objects,mix_leo,mix_meo,mix_geo,mix_heo,stations,step_s," +
+    "days,threads,cores,max_heap_mb,wall_s,cpu_s,cpu_util,peak_heap_mb,gc_s,gc_count,peak_fds,end_fds,output_bytes," +
+    "output_files";
+  
+  // Main
+  public static void main(String args[]) {
+    try {
+      // CONFIGURATION
+      File orekitData = new File("Libraries/orekit-data"); // The argument indicates the path to the config folder
+      DataProvidersManager manager = DataProvidersManager.getInstance();
+      manager.addProvider(new DirectoryCrawler(orekitData));
+      
+      // Arguments: "-name value" pairs
+      Map<String,String> options = new HashMap<String,String>();
+      for (int i = 0; i + 1 < args.length; i += 2)
+        options.put(args[i], args[i+1]);
+      
+      String modeNames[] = getOption(options, "-mode", "default").split(",");
+      List<Set<SOA.Mode>> modes = new ArrayList<Set<SOA.Mode>>();
+      for (String modeName : modeNames)
+        modes.add(SOA.parseModes(modeName)); // Invalid modes fail before any scenario runs
+      int sizes[] = parseInts(getOption(options, "-sizes", "100,1000,10000,25000"));
+      double mix[] = parseDoubles(getOption(options, "-mix", "70,10,10,10"));
+      int stationCounts[] = parseInts(getOption(options, "-stations", "2"));
+      double steps[] = parseDoubles(getOption(options, "-steps", "60"));
+      double days = Double.parseDouble(getOption(options, "-days", "1"));
+      int cores = Runtime.getRuntime().availableProcessors();
+      int threads = Integer.parseInt(getOption(options, "-threads", Integer.toString(cores)));
+      long seed = Long.parseLong(getOption(options, "-seed", "1"));
+      String outPath = getOption(options, "-out", "BenchmarkOutput");
+      
+      new File(outPath).mkdirs();
+      
+      TimeScale utc = TimeScalesFactory.getUTC();
+      AbsoluteDate initialDate = new AbsoluteDate(2021, 01, 01, 00, 00, 00.000, utc);
+      AbsoluteDate finalDate = initialDate.shiftedBy(days*24.0*60.0*60.0);
+      
+      // Warm-up (not reported)
+      System.out.println("Warming up..."); // Progress indicator
+      runScenario(SyntheticCatalog.generate(WARMUP_SIZE, mix, initialDate, seed), createStations(stationCounts[0]),
+                  initialDate, initialDate.shiftedBy(3600.0), steps[0], outPath + "/warmup", threads, modes.get(0));
+      
+      String reportName = outPath + "/report.csv";
+      PrintWriter report = new PrintWriter(new BufferedWriter(new FileWriter(reportName)));
+      report.println(REPORT_HEADER);
+      
+      for (int size : sizes) {
+        String tles[] = SyntheticCatalog.generate(size, mix, initialDate, seed);
+        
+        for (int stationCount : stationCounts) {
+          TopocentricFrame stations[] = createStations(stationCount);
+          
+          for (double stepT : steps) {
+            for (int m = 0; m < modes.size(); m++) {
+              String mode = getModeName(modes.get(m));
+              String scenario = String.format(loc,"%s_n%d_sta%d_step%.0f",mode.replace('+','_'),size,stationCount,
+                                              stepT);
+              System.out.println("Running scenario " + scenario + "..."); // Progress indicator
+              
+              double metrics[] = runScenario(tles, stations, initialDate, finalDate, stepT, outPath + "/" + scenario,
+                                             threads, modes.get(m));
+              
+              report.println(String.format(loc,"%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%d,%.3f,%.3f,%d,%d,%.1f,%.3f,%.3f,%.3f," +
+                                           "%.1f,%.3f,%.0f,%.0f,%.0f,%.0f,%.0f",scenario,mode,size,mix[0],mix[1],
+                                           mix[2],mix[3],stationCount,stepT,days,threads,cores,
+                                           Runtime.getRuntime().maxMemory()/1048576.0,metrics[0],metrics[1],
+                                           metrics[1]/(metrics[0]*cores),metrics[2],metrics[3],metrics[4],metrics[5],
+                                           metrics[6],metrics[7],metrics[8]));
+              report.flush(); // Keep the finished scenarios if a later one crashes
+            }
+          }
+        }
+      }
+      
+      report.close();
+      System.out.println("Done. Report written to " + reportName);
+    } catch (Exception e) {
+      System.out.println(e);
+    }
+  }
+  
+  ///////////////////////////////////////////////////// SCENARIOS /////////////////////////////////////////////////////
+  // Runs one scenario from an empty output folder, returns {wall [s], cpu [s], peak heap [MB], gc [s], gc count,
+  // peak fds, end fds, output bytes, output files}
+  private static double[] runScenario(String tles[], TopocentricFrame stations[], AbsoluteDate initialDate,
+                                      AbsoluteDate finalDate, double stepT, String scenarioPath, int threads,
+                                      Set<SOA.Mode> modes) throws Exception {
+    deleteFolder(Paths.get(scenarioPath));
+    
+    // Baselines
+    System.gc();
+    for (MemoryPoolMXBean memPool : ManagementFactory.getMemoryPoolMXBeans())
+      memPool.resetPeakUsage();
+    double gcTime0 = getGCTime(), gcCount0 = getGCCount();
+    long cpuTime0 = getCPUTime();
+    long wallTime0 = System.nanoTime();
+    
+    // File descriptors are sampled during the run
+    final long peakFds[] = {getOpenFds()};
+    ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+    sampler.scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        long fds = getOpenFds();
+        synchronized (peakFds) {
+          peakFds[0] = Math.max(peakFds[0], fds);
+        }
+      }
+    }, 0, SAMPLE_PERIOD, TimeUnit.MILLISECONDS);
+    
+    try {
+      SOA.run(tles, stations, initialDate, finalDate, stepT, scenarioPath, threads, false, modes);
+    } finally {
+      sampler.shutdown();
+      sampler.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+    }
+    
+    double metrics[] = new double[9];
+    metrics[0] = (System.nanoTime() - wallTime0)/1.0e9;
+    metrics[1] = (getCPUTime() - cpuTime0)/1.0e9;
+    metrics[2] = getPeakHeap()/1048576.0;
+    metrics[3] = getGCTime() - gcTime0;
+    metrics[4] = getGCCount() - gcCount0;
+    synchronized (peakFds) {
+      metrics[5] = peakFds[0];
+    }
+    metrics[6] = getOpenFds();
+    
+    try (Stream<Path> files = Files.walk(Paths.get(scenarioPath))) {
+      for (Path p : (Iterable<Path>) files::iterator) {
+        if (Files.isRegularFile(p)) {
+          metrics[7] += Files.size(p);
+          metrics[8]++;
+        }
+      }
+    }
+    
+    return metrics;
+  }
+  
+  // Ground stations of the scenarios, the first two are the ones of SOA
+  private static TopocentricFrame[] createStations(int count) throws Exception {
+    TopocentricFrame soaStations[] = SOA.getStations();
+    TopocentricFrame stations[] = new TopocentricFrame[count];
+    
+    Frame earthFrame = FramesFactory.getITRF(IERSConventions.IERS_2010, true);
+    BodyShape earth = new OneAxisEllipsoid(Constants.WGS84_EARTH_EQUATORIAL_RADIUS,
+                                           Constants.WGS84_EARTH_FLATTENING,
+                                           earthFrame); // Shape of the Earth
+    
+    for (int k = 0; k < count; k++) {
+      if (k < soaStations.length) {
+        stations[k] = soaStations[k];
+      } else {
+        // Latitudes evenly spaced, longitudes by the golden angle (no two stations on the same meridian)
+        double latitude = Math.toRadians(-60.0 + 120.0*(k + 0.5)/count);
+        double longitude = Math.toRadians((k*137.508) % 360.0 - 180.0);
+        GeodeticPoint point = new GeodeticPoint(latitude, longitude, 0.0);
+        stations[k] = new TopocentricFrame(earth, point, String.format(loc,"Station%03d",k));
+      }
+    }
+    
+    return stations;
+  }
+  
+  // Deletes a folder and its contents (if it exists)
+  private static void deleteFolder(Path folder) throws IOException {
+    if (!Files.exists(folder))
+      return;
+    
+    try (Stream<Path> files = Files.walk(folder)) {
+      List<Path> paths = files.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+      for (Path p : paths)
+        Files.delete(p);
+    }
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  ////////////////////////////////////////////////////// METRICS //////////////////////////////////////////////////////
+  // CPU time of the whole process [ns]
+  private static long getCPUTime() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean)
+      return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+    return -1;
+  }
+  
+  // Open file descriptors of the process, -1 if not available (non Unix systems)
+  private static long getOpenFds() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.UnixOperatingSystemMXBean)
+      return ((com.sun.management.UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+    return -1;
+  }
+  
+  // Sum of the peak usage of the heap pools since the last reset [bytes]
+  private static long getPeakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean memPool : ManagementFactory.getMemoryPoolMXBeans())
+      if (memPool.getType() == MemoryType.HEAP)
+        peak += memPool.getPeakUsage().getUsed();
+    return peak;
+  }
+  
+  // Accumulated collection time of all the collectors [s]
+  private static double getGCTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      time += Math.max(gc.getCollectionTime(), 0);
+    return time/1000.0;
+  }
+  
+  // Accumulated number of collections of all the collectors
+  private static double getGCCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+      count += Math.max(gc.getCollectionCount(), 0);
+    return count;
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  // Name of a combination of modes (as given to -mode)
+  private static String getModeName(Set<SOA.Mode> modes) {
+    if (modes.isEmpty())
+      return "default";
+    
+    StringBuilder name = new StringBuilder();
+    for (SOA.Mode mode : modes)
+      name.append(name.length() == 0 ? "" : "+").append(mode.name().toLowerCase(Locale.ROOT));
+    return name.toString();
+  }
+  
+  // Gets an option, or its default value
+  private static String getOption(Map<String,String> options, String name, String defaultValue) {
+    return options.containsKey(name) ? options.get(name) : defaultValue;
+  }
+  
+  // Parses a comma separated list of integers
+  private static int[] parseInts(String list) {
+    String parts[] = list.split(",");
+    int values[] = new int[parts.length];
+    for (int i = 0; i < parts.length; i++)
+      values[i] = Integer.parseInt(parts[i].trim());
+    return values;
+  }
+  
+  // Parses a comma separated list of doubles
+  private static double[] parseDoubles(String list) {
+    String parts[] = list.split(",");
+    double values[] = new double[parts.length];
+    for (int i = 0; i < parts.length; i++)
+      values[i] = Double.parseDouble(parts[i].trim());
+    return values;
+  }
+}
@@ -0,0 +1,288 @@
+/* Back-end of Satellite Orbit Analizer: SOATracker (Main)
+ * Live tracking service: look angles (azimuth, elevation, range) of the whole catalog from every ground station,
+ * recomputed every second and served over HTTP on localhost
+ *
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ *
+ * Endpoints:
+ * - /looks: CSV with the look angles of the last tick
+ * - /metrics: tick duration statistics over the last METRICS_WINDOW ticks, and the ticks over the latency budget
+ *   (LATENCY_BUDGET) and over the tick period since the start
+ *
+ * NOTE: Usage: SOATracker [port] (default 8080)
+ * NOTE: The transform from each propagator frame to each station is computed once per tick, every object then only
+ *       needs its own propagation and a position transform. TLE objects skip the full SpacecraftState (attitude)
+ *       and only compute their coordinates.
+ */
+
+// Orekit Libraries
+import org.orekit.frames.*;
+import org.orekit.time.*;
+import org.orekit.data.*;
+
+// Hipparchus Libraries
+import org.hipparchus.geometry.euclidean.threed.*;
+
+// Java Libraries
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// HTTP Server (JDK)
+import com.sun.net.httpserver.*;
+
+// SOATracker Class
+public class SOATracker {
+  // Defaults and Other Finals
+  private static final Locale loc = new Locale("EN","US");
+  private static final long TICK_PERIOD = 1000; // [ms]
+  private static final long LATENCY_BUDGET = 100; // [ms] Target tick duration (p99)
+  private static final int METRICS_WINDOW = 3600; // [ticks]
+  
+  // Class Variables
+  private final Satellite[] satellites;
+  private final TopocentricFrame[] stations;
+  private final Set<Frame> satFrames = new HashSet<Frame>(); // Frames of the propagated states
+  private final ExecutorService pool;
+  private final int numChunks;
+  private final TimeScale utc;
+  private volatile Snapshot current;
+  
+  // Metrics Related Class Variables
+  private final double[] tickDurations = new double[METRICS_WINDOW]; // [ms]
+  private long numTicks = 0, numBreaches = 0, numOverruns = 0; // Ticks over LATENCY_BUDGET and over TICK_PERIOD
+  
+  // Look angles of every satellite and station at one date, index is sat*stations.length + station
+  private static class Snapshot {
+    final AbsoluteDate date;
+    final double[] azimuth, elevation, range; // [deg], [deg], [m]
+    
+    Snapshot(AbsoluteDate d, int size) {
+      date = d;
+      azimuth = new double[size];
+      elevation = new double[size];
+      range = new double[size];
+    }
+  }
+  
+  // SOATracker Constructor, warms up the propagators
+  public SOATracker(Satellite[] sats, TopocentricFrame[] stas, int threads) throws Exception {
+    satellites = sats;
+    stations = stas;
+    pool = Executors.newFixedThreadPool(threads);
+    numChunks = 4*threads; // Several chunks per thread to balance the load
+    utc = TimeScalesFactory.getUTC();
+    
+    AbsoluteDate now = new AbsoluteDate(new Date(), utc);
+    for (Satellite sat : satellites) {
+      sat.getPVCoordinates(now);
+      satFrames.add(sat.getFrame());
+    }
+  }
+  
+  /////////////////////////////////////////////////////// TICK ////////////////////////////////////////////////////////
+  // Recomputes the look angles of the whole catalog for the current date
+  public void tick() {
+    long tickStart = System.nanoTime();
+    
+    try {
+      final AbsoluteDate date = new AbsoluteDate(new Date(), utc);
+      final Snapshot next = new Snapshot(date, satellites.length*stations.length);
+      
+      // Transforms shared by every object of the tick
+      final Map<Frame,Transform[]> transforms = new HashMap<Frame,Transform[]>();
+      for (Frame frame : satFrames) {
+        Transform[] toStations = new Transform[stations.length];
+        for (int j = 0; j < stations.length; j++)
+          toStations[j] = frame.getTransformTo(stations[j], date);
+        transforms.put(frame, toStations);
+      }
+      
+      // Propagate and compute in parallel, each chunk is a contiguous range of satellites
+      List<Callable<Void>> chunks = new ArrayList<Callable<Void>>();
+      for (int c = 0; c < numChunks; c++) {
+        final int first = (int) ((long) c*satellites.length/numChunks);
+        final int last = (int) ((long) (c + 1)*satellites.length/numChunks);
+        chunks.add(new Callable<Void>() {
+          public Void call() {
+            for (int i = first; i < last; i++)
+              computeLooks(i, date, transforms, next);
+            return null;
+          }
+        });
+      }
+      pool.invokeAll(chunks);
+      
+      current = next;
+    } catch (Exception e) {
+      System.out.println("Error during tick: " + e);
+    }
+    
+    recordTick((System.nanoTime() - tickStart)/1.0e6);
+  }
+  
+  // Computes the look angles of one satellite from every station
+  private void computeLooks(int i, AbsoluteDate date, Map<Frame,Transform[]> transforms, Snapshot next) {
+    int base = i*stations.length;
+    
+    try {
+      Vector3D position = satellites[i].getPVCoordinates(date).getPosition();
+      Transform[] toStations = transforms.get(satellites[i].getFrame());
+      
+      for (int j = 0; j < stations.length; j++) {
+        // Topocentric frame: X east, Y north, Z zenith
+        Vector3D p = toStations[j].transformPosition(position);
+        double azimuth = Math.toDegrees(Math.atan2(p.getX(), p.getY()));
+        
+        next.azimuth[base + j] = (azimuth < 0) ? azimuth + 360.0 : azimuth;
+        next.elevation[base + j] = Math.toDegrees(Math.asin(p.getZ()/p.getNorm()));
+        next.range[base + j] = p.getNorm();
+      }
+    } catch (Exception e) {
+      // Object could not be propagated (e.g. decayed), reported as NaN
+      for (int j = 0; j < stations.length; j++) {
+        next.azimuth[base + j] = Double.NaN;
+        next.elevation[base + j] = Double.NaN;
+        next.range[base + j] = Double.NaN;
+      }
+    }
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  ////////////////////////////////////////////////////// METRICS //////////////////////////////////////////////////////
+  // Records the duration of a tick [ms]
+  private synchronized void recordTick(double duration) {
+    tickDurations[(int) (numTicks % METRICS_WINDOW)] = duration;
+    numTicks++;
+    if (duration > LATENCY_BUDGET)
+      numBreaches++;
+    if (duration > TICK_PERIOD)
+      numOverruns++;
+    
+    if (numTicks % 60 == 0)
+      System.out.println(getMetrics().replace('\n',' '));
+  }
+  
+  // Tick duration statistics (count, budget breaches, overruns, last, p50, p90, p99, max) as "key=value" lines
+  public synchronized String getMetrics() {
+    int n = (int) Math.min(numTicks, METRICS_WINDOW);
+    if (n == 0)
+      return "ticks=0\n";
+    
+    double[] sorted = Arrays.copyOf(tickDurations, n);
+    Arrays.sort(sorted);
+    double last = tickDurations[(int) ((numTicks - 1) % METRICS_WINDOW)];
+    
+    return String.format(loc,"ticks=%d\nbudget_ms=%d\nbreaches=%d\noverruns=%d\nobjects=%d\nstations=%d\n" +
+                         "last_ms=%.3f\np50_ms=%.3f\np90_ms=%.3f\np99_ms=%.3f\nmax_ms=%.3f\n",numTicks,LATENCY_BUDGET,
+                         numBreaches,numOverruns,satellites.length,stations.length,last,percentile(sorted,0.50),
+                         percentile(sorted,0.90),percentile(sorted,0.99),sorted[n - 1]);
+  }
+  
+  // Nearest-rank percentile of sorted values
+  private static double percentile(double[] sorted, double p) {
+    int rank = (int) Math.ceil(p*sorted.length);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  // Look angles of the last tick as CSV
+  public String getLooks() throws Exception {
+    Snapshot snap = current;
+    if (snap == null)
+      return "";
+    
+    DateTimeComponents dateTimeComps = snap.date.getComponents(0); // Synched with UTC
+    DateComponents dateComps = dateTimeComps.getDate();
+    TimeComponents timeComps = dateTimeComps.getTime();
+    String time = String.format(loc,"%d %s %d %02d:%02d:%06.3f",dateComps.getDay(),
+                                dateComps.getMonthEnum().getCapitalizedAbbreviation(),dateComps.getYear(),
+                                timeComps.getHour(),timeComps.getMinute(),timeComps.getSecond());
+    
+    StringBuilder sb = new StringBuilder();
+    sb.append("\"Time (UTCG)\",\"Satellite\",\"Station\",\"Azimuth (deg)\",\"Elevation (deg)\",\"Range (m)\"\n");
+    Formatter f = new Formatter(sb, loc);
+    for (int i = 0; i < satellites.length; i++) {
+      for (int j = 0; j < stations.length; j++) {
+        int k = i*stations.length + j;
+        f.format("%s,%s,%s,%07.3f,%07.3f,%.1f\n",time,satellites[i].getName(),stations[j].getName(),
+                 snap.azimuth[k],snap.elevation[k],snap.range[k]);
+      }
+    }
+    
+    return sb.toString();
+  }
+  
+  // Starts the ticks and the HTTP server
+  public void start(int port) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/looks", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          respond(exchange, "text/csv", getLooks());
+        } catch (Exception e) {
+          respond(exchange, "text/plain", "Error: " + e);
+        }
+      }
+    });
+    server.createContext("/metrics", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        respond(exchange, "text/plain", getMetrics());
+      }
+    });
+    server.setExecutor(Executors.newSingleThreadExecutor()); // Requests never run on the tick pool
+    server.start();
+    
+    // Fixed rate, a tick that overruns delays the next one (ticks never overlap)
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    scheduler.scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        tick();
+      }
+    }, 0, TICK_PERIOD, TimeUnit.MILLISECONDS);
+  }
+  
+  // Writes an HTTP response
+  private static void respond(HttpExchange exchange, String type, String body) throws IOException {
+    byte[] bytes = body.getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type", type + "; charset=UTF-8");
+    exchange.sendResponseHeaders(200, bytes.length);
+    OutputStream os = exchange.getResponseBody();
+    os.write(bytes);
+    os.close();
+  }
+  
+  // Main
+  public static void main(String args[]) {
+    try {
+      // CONFIGURATION
+      File orekitData = new File("Libraries/orekit-data"); // The argument indicates the path to the config folder
+      DataProvidersManager manager = DataProvidersManager.getInstance();
+      manager.addProvider(new DirectoryCrawler(orekitData));
+      
+      int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8080;
+      int threads = Runtime.getRuntime().availableProcessors();
+      
+      TopocentricFrame stations[] = SOA.getStations();
+      
+      // Set the propagators
+      System.out.println("Setting up the catalog..."); // Progress indicator
+      int numOfSats = SOA.tleData.length/3;
+      Satellite satellites[] = new Satellite[numOfSats];
+      for (int i = 0; i < numOfSats; i++) {
+        satellites[i] = new Satellite();
+        satellites[i].setTLEPropagator(SOA.tleData[i*3+1],SOA.tleData[i*3+2],SOA.tleData[i*3]);
+      }
+      
+      System.out.println("Warming up propagators..."); // Progress indicator
+      SOATracker tracker = new SOATracker(satellites, stations, threads);
+      tracker.start(port);
+      
+      System.out.println("Tracking " + numOfSats + " objects, serving http://localhost:" + port + "/looks and /metrics");
+    } catch (Exception e) {
+      System.out.println(e);
+    }
+  }
+}
@@ -2,17 +2,16 @@
  * 
  * Author: Javier Montemayor
  * Created: 2018-06-13
- * Last update: 2018-06-25
+ * Last update: 2026-10-18
  * 
- * To-do:
- * - Implement a way of saving and opening a satellite. Useful info:
- *    - TLEPropagator: resetInitialState?(SpacecraftState state)
- *    - SpacecraftState implements Serializable
- *    - http://www.avajava.com/tutorials/lessons/how-do-i-write-an-object-to-a-file-and-read-it-back.html
+ * NOTE: Checkpoints (see SatelliteCheckpoint) save the state of a run so it can be resumed. TLEPropagator does not
+ *       support resetInitialState, so TLE satellites are resumed by propagating the TLE again up to the checkpoint.
+ * NOTE: With an aggregator (see ConstellationAggregator) and the printers off, nothing is written per satellite.
  */
 
 // Orekit Libraries
 import org.orekit.frames.*;
+import org.orekit.errors.*;
 import org.orekit.time.*;
 import org.orekit.data.*;
 import org.orekit.orbits.*;
@@ -23,18 +22,23 @@ import org.orekit.utils.*;
 import org.orekit.propagation.events.*;
 import org.orekit.propagation.events.handlers.*;
 import org.orekit.propagation.analytical.tle.*;
+import org.orekit.propagation.numerical.*;
+import org.orekit.forces.*;
 
 // Hipparchus Libraries
 import org.hipparchus.geometry.euclidean.threed.*;
+import org.hipparchus.ode.nonstiff.*;
 
 // Java Libraries
 import java.io.*;
+import java.nio.*;
 import java.util.*;
 
 // Satellite Class
 public class Satellite implements Runnable {
   // Defaults and Other Finals
   private static final Locale loc = new Locale("EN","US");
+  private static final double minStep = 0.001, maxStep = 300.0, positionTolerance = 1.0; // Numerical integrator [s], [m]
   
   // Class Variables
   private AbsoluteDate initialDate, finalDate;
@@ -44,22 +48,47 @@ public class Satellite implements Runnable {
   private CelestialBody sunBody, earthBody;
   private Frame inertialFrame;
   private String satName;
+  private String propagatorId; // Source and settings of the propagator, to match checkpoints against
   
   // Printing Related Class Variables
   private boolean printSun = true, printEarth = true, printAccess = true;
   private String sunAnglesName, earthAnglesName;
   private PrintWriter sunAnglesPrinter, earthAnglesPrinter;// log???
   private Map<String,PrintWriter> accessTimesPrinters = new HashMap<String,PrintWriter>();
+  private Map<String,String> accessTimesNames = new HashMap<String,String>();
   private Map<String,Integer> accessNum = new HashMap<String,Integer>();
   private Map<String,AbsoluteDate> accessBegin = new HashMap<String,AbsoluteDate>();
+  private Map<String,ElevationDetector> elevationDetectors = new HashMap<String,ElevationDetector>();
+  private Map<String,Boolean> inView = new HashMap<String,Boolean>(); // Of the elevation detectors
+  
+  // Elevation Sweep Related Class Variables
+  private List<ElevationSweep> elevationSweeps = new ArrayList<ElevationSweep>();
+  private double sweepStep = Double.POSITIVE_INFINITY; // [s] Smallest maxCheck of the sweeps
+  
+  // Ephemeris Store Related Class Variables
+  private EphemerisStore ephemerisStore;
+  private int ephemerisIndex;
+  
+  // Aggregation Related Class Variables
+  private ConstellationAggregator aggregator;
+  private EclipseDetector eclipseDetector; // Only its g function is used (positive when not in umbra)
+  
+  // Checkpoint Related Class Variables
+  private String checkpointName;
+  private long checkpointPeriod; // [ms] of wall time
+  private boolean resume = false;
+  private AbsoluteDate startDate; // initialDate, or the checkpoint date when resuming
   
   // Satellite Constructor
   public Satellite() {
     try {
-      // Try default configuration
-      File orekitData = new File("Libraries/orekit-data");
-      manager = DataProvidersManager.getInstance();
-      manager.addProvider(new DirectoryCrawler(orekitData));
+      // Try default configuration, unless some data was already configured (every extra crawler would be scanned
+      // again when loading data)
+      synchronized (Satellite.class) {
+        manager = DataProvidersManager.getInstance();
+        if (manager.getProviders().isEmpty())
+          manager.addProvider(new DirectoryCrawler(new File("Libraries/orekit-data")));
+      }
       
       // Set celestial bodies
       sunBody = CelestialBodyFactory.getSun();
@@ -84,6 +113,7 @@ public class Satellite implements Runnable {
       propagator.setSlaveMode();
       
       satName = name;
+      propagatorId = "TLE\n" + line1 + "\n" + line2;
       
       
       // Success, return true
@@ -95,6 +125,45 @@ public class Satellite implements Runnable {
     // An error occurred, return false
     return false;
   }
+  
+  // Sets a numerical propagator (high fidelity) starting from a TLE, the force model data is shared by all satellites
+  public boolean setNumericalPropagator(String line1, String line2, String name, ForceModelData forceData,
+                                        double mass, double crossSection, double dragCoeff) {
+    try {
+      // Initial state from the TLE (mean elements taken as osculating) in the inertial frame
+      TLE tle = new TLE(line1,line2);
+      SpacecraftState tleState = TLEPropagator.selectExtrapolator(tle).getInitialState();
+      Orbit initialOrbit = new CartesianOrbit(tleState.getPVCoordinates(inertialFrame), inertialFrame,
+                                              tleState.getDate(), forceData.getMu());
+      
+      // Lightweight per satellite integrator and force models
+      double[][] tolerances = NumericalPropagator.tolerances(positionTolerance, initialOrbit, OrbitType.CARTESIAN);
+      DormandPrince853Integrator integrator =
+        new DormandPrince853Integrator(minStep, maxStep, tolerances[0], tolerances[1]);
+      
+      NumericalPropagator numProp = new NumericalPropagator(integrator);
+      numProp.setOrbitType(OrbitType.CARTESIAN);
+      for (ForceModel force : forceData.createForceModels(crossSection, dragCoeff))
+        numProp.addForceModel(force);
+      numProp.setInitialState(new SpacecraftState(initialOrbit, mass));
+      
+      // Set propagator (if there was a previous one, it will be replaced)
+      propagator = numProp;
+      propagator.setSlaveMode();
+      
+      satName = name;
+      propagatorId = String.format(loc,"Numerical (%s, mass %s kg, cross section %s m^2, Cd %s)\n%s\n%s",
+                                   forceData.getDescription(),mass,crossSection,dragCoeff,line1,line2);
+      
+      // Success, return true
+      return true;
+    } catch (Exception e) {
+      System.out.println("Error setting numerical propagator: " + e);
+    }
+    
+    // An error occurred, return false
+    return false;
+  }
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
   
   //////////////////////////////////////////////// SET PRINTER METHODS ////////////////////////////////////////////////
@@ -176,6 +245,42 @@ public class Satellite implements Runnable {
     earthAnglesName = p + "/" + satName + "_earthAngles.csv";
     return true;
   }
+  
+  // Sets the checkpoint file, the wall time between checkpoints [s] and whether to resume from an existing one
+  public boolean setCheckpoint(String p, double period, boolean resumeRun) {
+    if (satName == null) {
+      System.out.println("Please set the satellite name first.");
+      return false;
+    }
+    if (period <= 0.0)
+      return false;
+    
+    checkpointName = p + "/" + satName + ".ckpt";
+    checkpointPeriod = (long) (period*1000.0);
+    resume = resumeRun;
+    return true;
+  }
+  
+  // Sets the store where the coordinates of every step are written (index of the satellite in the store)
+  public boolean setEphemerisStore(EphemerisStore store, int index) {
+    if (index < 0 || index >= store.getNumSats())
+      return false;
+    
+    ephemerisStore = store;
+    ephemerisIndex = index;
+    return true;
+  }
+  
+  // Sets the aggregator where the steps (sunlight) and the accesses are reduced (shared by all satellites)
+  public boolean setAggregator(ConstellationAggregator agg) {
+    if (sunBody == null || earthBody == null)
+      return false;
+    
+    aggregator = agg;
+    eclipseDetector = new EclipseDetector(sunBody, Constants.SUN_RADIUS,
+                                          earthBody, Constants.WGS84_EARTH_EQUATORIAL_RADIUS);
+    return true;
+  }
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
   
   ///////////////////////////////////////////////// "SET ALL" METHODS /////////////////////////////////////////////////
@@ -222,20 +327,16 @@ public class Satellite implements Runnable {
                              ).withConstantElevation(Math.toRadians(elevationDeg)
                                                     ).withHandler(new VisibilityHandler());
       propagator.addEventDetector(elevDetect);
+      elevationDetectors.put(station.getName(), elevDetect);
       
       // Create the station folder in case it does not exist //// THIS COULD BE DONE BEFORE?
       String stationFolder = accessPath + "/" + station.getName();
       File stationDir = new File(stationFolder);
-      if (!stationDir.exists())
+      if (printAccess && !stationDir.exists())
         stationDir.mkdirs();
       
-      String fName = stationFolder + "/" + satName + ".csv";
-      
-      if (printAccess) {
-        accessTimesPrinters.put(station.getName(), new PrintWriter(fName,"UTF-8"));
-        accessTimesPrinters.get(station.getName()).
-          println("\"Access\",\"Start Time (UTCG)\",\"Stop Time (UTCG)\",\"Duration (sec)\"");
-      }
+      // The printer is opened in run(), so a resumed run can append to it
+      accessTimesNames.put(station.getName(), stationFolder + "/" + satName + ".csv");
       
       // Success, return true
       return true;
@@ -246,6 +347,34 @@ public class Satellite implements Runnable {
     // An error occurred, return false
     return false;
   }
+  
+  // Sets an elevation sweep for the given station: access times for every elevation mask from a single elevation
+  // time series (sampled every maxCheck seconds), written to one folder per mask
+  public boolean setElevationDetector(TopocentricFrame station, double maxCheck, double threshold,
+                                      List<Double> elevationDegs, String accessPath) {
+    // If no propagator has been provided, return false
+    if (propagator == null || maxCheck <= 0.0 || elevationDegs.isEmpty())
+      return false;
+    
+    ElevationSweep sweep = new ElevationSweep(station, threshold, elevationDegs.size());
+    for (int k = 0; k < elevationDegs.size(); k++) {
+      sweep.masks[k] = Math.toRadians(elevationDegs.get(k));
+      
+      // Create the mask folder in case it does not exist
+      String maskFolder = String.format(loc, "%s/%s/Mask_%04.1f", accessPath, station.getName(), elevationDegs.get(k));
+      File maskDir = new File(maskFolder);
+      if (printAccess && !maskDir.exists())
+        maskDir.mkdirs();
+      
+      // Each mask is handled like a station of its own (printers, counters and checkpoints)
+      sweep.keys[k] = String.format(loc, "%s/Mask_%04.1f", station.getName(), elevationDegs.get(k));
+      accessTimesNames.put(sweep.keys[k], maskFolder + "/" + satName + ".csv");
+    }
+    
+    elevationSweeps.add(sweep);
+    sweepStep = Math.min(sweepStep, maxCheck);
+    return true;
+  }
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
   
   ////////////////////////////////////////////////////// RUN //////////////////////////////////////////////////////////
@@ -257,106 +386,165 @@ public class Satellite implements Runnable {
     } else {
       // All should be set to perform the propagation
       try {
-        // Propagate until the initial date is reached
-        while (propagator.propagate(initialDate).getDate().compareTo(initialDate) < 0) {}
+        // Look for a checkpoint of a previous run
+        SatelliteCheckpoint checkpoint = null;
+        if (checkpointName != null && resume)
+          checkpoint = SatelliteCheckpoint.load(checkpointName);
         
-        // Reset or initializes access counter, set accessBegin as initialDate in case propagation starts during an access
-        for (String key : accessTimesPrinters.keySet()) {
-          accessNum.put(key,1);
-          accessBegin.put(key,initialDate);
+        // A checkpoint of a different run (dates, step or propagator) is ignored, the satellite starts again
+        if (checkpoint != null && !checkpoint.matches(initialDate, finalDate, stepT, propagatorId)) {
+          System.out.println("The checkpoint of " + satName + " is from a different run, starting again.");
+          checkpoint = null;
         }
         
-        // Set PrintWriters
-        if (printSun) {
-          sunAnglesPrinter = new PrintWriter(sunAnglesName,"UTF-8");
-          sunAnglesPrinter.println("\"Time (UTCG)\",\"Azimuth (deg)\",\"Elevation (deg)\",\"Subsolar (deg)\"");
+        if (checkpoint != null && checkpoint.finished) {
+          System.out.println("Skipping " + satName + ", already finished.");
+          return;
         }
-        if (printEarth) {
-          earthAnglesPrinter = new PrintWriter(earthAnglesName,"UTF-8");
-          earthAnglesPrinter.println("\"Time (UTCG)\",\"Azimuth (deg)\",\"Elevation (deg)\"");
+        
+        startDate = (checkpoint == null) ? initialDate : checkpoint.extrapDate;
+        
+        // Restore the propagator state (TLE propagators are non-resettable, they simply propagate up to startDate)
+        if (checkpoint != null && checkpoint.state != null && !(propagator instanceof TLEPropagator))
+          propagator.resetInitialState(checkpoint.state);
+        
+        // Propagate until the start date is reached
+        SpacecraftState sweepState;
+        while ((sweepState = propagator.propagate(startDate)).getDate().compareTo(startDate) < 0) {}
+        
+        if (checkpoint == null) {
+          // Reset or initializes access counter, set accessBegin as initialDate in case propagation starts during an access
+          for (String key : accessTimesNames.keySet()) {
+            accessNum.put(key,1);
+            accessBegin.put(key,initialDate);
+          }
+          
+          // Set PrintWriters
+          if (printSun) {
+            sunAnglesPrinter = openPrinter(sunAnglesName, -1);
+            sunAnglesPrinter.println("\"Time (UTCG)\",\"Azimuth (deg)\",\"Elevation (deg)\",\"Subsolar (deg)\"");
+          }
+          if (printEarth) {
+            earthAnglesPrinter = openPrinter(earthAnglesName, -1);
+            earthAnglesPrinter.println("\"Time (UTCG)\",\"Azimuth (deg)\",\"Elevation (deg)\"");
+          }
+          if (printAccess) {
+            for (String key : accessTimesNames.keySet()) {
+              accessTimesPrinters.put(key, openPrinter(accessTimesNames.get(key), -1));
+              accessTimesPrinters.get(key).
+                println("\"Access\",\"Start Time (UTCG)\",\"Stop Time (UTCG)\",\"Duration (sec)\"");
+            }
+          }
+        } else {
+          // Continue the access counters and the ongoing accesses of the checkpoint
+          accessNum.putAll(checkpoint.accessNum);
+          accessBegin.putAll(checkpoint.accessBegin);
+          for (String key : accessTimesNames.keySet()) {
+            if (!accessNum.containsKey(key)) { // Station added after the checkpoint, starts like a new run
+              accessNum.put(key,1);
+              accessBegin.put(key,startDate);
+            }
+          }
+          
+          // Reopen PrintWriters, dropping whatever was written after the checkpoint
+          if (printSun)
+            sunAnglesPrinter = openPrinter(sunAnglesName, checkpoint.sunOffset);
+          if (printEarth)
+            earthAnglesPrinter = openPrinter(earthAnglesName, checkpoint.earthOffset);
+          if (printAccess) {
+            for (String key : accessTimesNames.keySet()) {
+              Long offset = checkpoint.accessOffsets.get(key); // Null if the access was not printed before
+              accessTimesPrinters.put(key, openPrinter(accessTimesNames.get(key), offset == null ? -1 : offset));
+              if (offset == null)
+                accessTimesPrinters.get(key).
+                  println("\"Access\",\"Start Time (UTCG)\",\"Stop Time (UTCG)\",\"Duration (sec)\"");
+            }
+          }
+          
+          System.out.println("Resuming " + satName + " from " + startDate + ".");
         }
         
-        SpacecraftState currentState;
-        for (AbsoluteDate extrapDate = initialDate; extrapDate.compareTo(finalDate) <= 0; extrapDate = extrapDate.shiftedBy(stepT)) {
+        // Stations of this satellite, so they are reported even without accesses
+        if (aggregator != null)
+          for (String key : accessTimesNames.keySet())
+            aggregator.addStation(key);
+        
+        // Stations in view at the start date (the detectors only report the changes)
+        for (String key : elevationDetectors.keySet())
+          inView.put(key, elevationDetectors.get(key).g(sweepState) > 0);
+        
+        // Map the series of this satellite in the ephemeris store
+        DoubleBuffer ephemerisSeries = null;
+        if (ephemerisStore != null)
+          ephemerisSeries = ephemerisStore.getSeries(ephemerisIndex);
+        
+        // First sample of the elevation sweeps
+        for (ElevationSweep sweep : elevationSweeps)
+          sweep.update(sweepState.getPVCoordinates(inertialFrame), true);
+        
+        long lastCheckpoint = System.currentTimeMillis();
+        SpacecraftState currentState = null;
+        for (AbsoluteDate extrapDate = startDate; extrapDate.compareTo(finalDate) <= 0; extrapDate = extrapDate.shiftedBy(stepT)) {
+          // Save a checkpoint if enough wall time has passed (extrapDate has not been processed yet)
+          if (checkpointName != null && System.currentTimeMillis() - lastCheckpoint >= checkpointPeriod) {
+            saveCheckpoint(currentState, extrapDate, false);
+            lastCheckpoint = System.currentTimeMillis();
+          }
+          
+          // Intermediate samples for the elevation sweeps, so they are never sampled coarser than their maxCheck
+          if (!elevationSweeps.isEmpty()) {
+            for (AbsoluteDate subDate = sweepState.getDate().shiftedBy(sweepStep); subDate.compareTo(extrapDate) < 0;
+                 subDate = sweepState.getDate().shiftedBy(sweepStep)) {
+              sweepState = propagator.propagate(subDate);
+              for (ElevationSweep sweep : elevationSweeps)
+                sweep.update(sweepState.getPVCoordinates(inertialFrame), false);
+            }
+          }
+          
           // Get current state
           currentState = propagator.propagate(extrapDate);
           
-          // Get the absolute date, break down into date and time
+          // Sample the elevation sweeps
+          if (!elevationSweeps.isEmpty() && currentState.getDate().compareTo(sweepState.getDate()) > 0) {
+            sweepState = currentState;
+            for (ElevationSweep sweep : elevationSweeps)
+              sweep.update(sweepState.getPVCoordinates(inertialFrame), false);
+          }
+          
           AbsoluteDate absDate = currentState.getDate();
-          DateTimeComponents dateTimeComps = absDate.getComponents(0); // Synched with UTC
-          DateComponents dateComps = dateTimeComps.getDate();
-          TimeComponents timeComps = dateTimeComps.getTime();
+          
+          // The store and the aggregator need the state at extrapDate (an event may have stopped the propagation early)
+          SpacecraftState stepState = currentState;
+          if (ephemerisSeries != null || aggregator != null)
+            while (stepState.getDate().compareTo(extrapDate) < 0)
+              stepState = propagator.propagate(extrapDate);
+          
+          // Write to the ephemeris store
+          if (ephemerisSeries != null) {
+            int step = ephemerisStore.getStepIndex(extrapDate);
+            if (step >= 0)
+              EphemerisStore.putPV(ephemerisSeries, step, stepState.getPVCoordinates(ephemerisStore.getFrame()));
+          }
+          
+          // Reduce the step into the aggregator
+          if (aggregator != null)
+            aggregator.addStep(extrapDate, eclipseDetector.g(stepState) > 0);
           
           // If its before the initial date, skip
 //          if (absDate.compareTo(initialDate) <= 0)
 //            continue;
           
-          // Get month string
-          String monat = dateComps.getMonthEnum().getCapitalizedAbbreviation();
-          
           // Get the satellite reference frame
-          LocalOrbitalFrame locFrame =
-            new LocalOrbitalFrame(inertialFrame,LOFType.VVLH,
-                                  currentState.getPVCoordinates().toTaylorProvider(inertialFrame),"Satellite Frame");
+          LocalOrbitalFrame locFrame = getLocalFrame(inertialFrame, currentState.getPVCoordinates());
           
           // If active, print Solar Angles
-          if (printSun) {
-            // Get the respective coordinates
-            Vector3D sunFromEarth = sunBody.getPVCoordinates(absDate, inertialFrame).getPosition();
-            Vector3D satFromEarth = currentState.getPVCoordinates().getPosition();
-            Vector3D sunFromSat = sunBody.getPVCoordinates(absDate, locFrame).getPosition();
-            
-            // Get solar angles
-            double subsol, sunAzim, sunElev;
-            subsol= Math.toDegrees(Vector3D.angle(sunFromEarth,satFromEarth)); // [deg]
-            sunAzim = Math.toDegrees(Vector3D.angle(Vector3D.PLUS_I,sunFromSat.add(new Vector3D(0.0,0.0,-sunFromSat.getZ())))); // [deg]
-            sunElev = Math.toDegrees(Vector3D.angle(sunFromSat,new Vector3D(sunFromSat.getX(),sunFromSat.getY(),0.0))); // [deg]
-            // Fix sign for sunAzim
-            if (sunFromSat.getY() < 0) {
-              sunAzim = 360 - sunAzim;
-            }
-            // Fix sign for sunElev
-            if (sunFromSat.getZ() < 0) {
-              sunElev = - sunElev;
-            }
-            
-            // Write to solar angles file
-            sunAnglesPrinter.printf(loc,"%d %s %d %02d:%02d:%06.3f,%07.3f,%07.3f,%07.3f\n",dateComps.getDay(),monat,
-                                    dateComps.getYear(),timeComps.getHour(),timeComps.getMinute(),timeComps.getSecond(),
-                                    sunAzim,sunElev,subsol);
-          }
+          if (printSun)
+            writeSunAngles(sunAnglesPrinter, absDate,
+                           getSunAngles(sunBody, inertialFrame, locFrame, currentState.getPVCoordinates()));
           
           // If active, print Earth Angles
-          if (printEarth) {
-            // Get the respective coordinates
-            Vector3D earthFromSat = earthBody.getPVCoordinates(absDate, locFrame).getPosition();
-            
-            // Get Earth angles
-            double earthAzim, earthElev;
-            if (earthFromSat.getX() == 0 & earthFromSat.getY() == 0) { // Prevents crashing when X and Y are both 0
-              earthAzim = 0.0; // [deg]
-              if (earthFromSat.getZ() > 0)
-                earthElev = 90.0; // [deg]
-              else
-                earthElev = -90.0; // [deg]
-            } else {
-              earthAzim = Math.toDegrees(Vector3D.angle(Vector3D.PLUS_I,earthFromSat.add(new Vector3D(0.0,0.0,-earthFromSat.getZ())))); // [deg]
-              earthElev = Math.toDegrees(Vector3D.angle(earthFromSat,new Vector3D(earthFromSat.getX(),earthFromSat.getY(),0.0))); // [deg]
-            }
-            // Fix sign for earthAzim
-            if (earthFromSat.getY() < 0) {
-              earthAzim = 360 - earthAzim;
-            }
-            // Fix sign for sunElev
-            if (earthFromSat.getZ() < 0) {
-              earthElev = - earthElev;
-            }
-            
-            // Write to Earth angles file
-            earthAnglesPrinter.printf(loc,"%d %s %d %02d:%02d:%06.3f,%07.3f,%07.3f\n",dateComps.getDay(),monat,
-                                      dateComps.getYear(),timeComps.getHour(),timeComps.getMinute(),timeComps.getSecond(),
-                                      earthAzim,earthElev);
-          }
+          if (printEarth)
+            writeEarthAngles(earthAnglesPrinter, absDate, getEarthAngles(earthBody, locFrame, absDate));
         }
         
         // Close PrintWriters
@@ -371,6 +559,20 @@ public class Satellite implements Runnable {
           }
         }
         
+        // Accesses still open at the final date are closed there (the aggregates are the whole output, so the open
+        // accesses are counted although the Access Times files drop them)
+        if (aggregator != null) {
+          for (String key : inView.keySet())
+            if (inView.get(key))
+              aggregator.addAccess(key, accessBegin.get(key), finalDate);
+          for (ElevationSweep sweep : elevationSweeps)
+            sweep.closeAccesses(finalDate);
+        }
+        
+        // Mark the satellite as finished, so a resumed run skips it
+        if (checkpointName != null)
+          saveCheckpoint(currentState, finalDate, true);
+        
       }catch (Exception e) {
         System.out.println("Error while running: " + e);
       }
@@ -378,44 +580,281 @@ public class Satellite implements Runnable {
     }
   }
   
+  ///////////////////////////////////////////////////// GET METHODS ///////////////////////////////////////////////////
+  public String getName() {
+    return satName;
+  }
+  
+  // Frame of the coordinates given by getPVCoordinates
+  public Frame getFrame() {
+    return propagator.getFrame();
+  }
+  
+  // Propagates to the given date and returns the coordinates (in getFrame), the propagator keeps its state between
+  // calls (used by SOATracker, must not be called while the satellite is running)
+  public PVCoordinates getPVCoordinates(AbsoluteDate date) throws OrekitException {
+    // TLE propagators can skip the full state (attitude, mass...)
+    if (propagator instanceof TLEPropagator)
+      return ((TLEPropagator) propagator).getPVCoordinates(date);
+    
+    return propagator.propagate(date).getPVCoordinates(propagator.getFrame());
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  /////////////////////////////////////////////////// ANGLE METHODS ///////////////////////////////////////////////////
+  // Gets the satellite reference frame for the given coordinates (in the inertial frame)
+  static LocalOrbitalFrame getLocalFrame(Frame inertialFrame, TimeStampedPVCoordinates pv) {
+    return new LocalOrbitalFrame(inertialFrame,LOFType.VVLH,pv.toTaylorProvider(inertialFrame),"Satellite Frame");
+  }
+  
+  // Gets the solar angles {azimuth, elevation, subsolar} [deg]
+  static double[] getSunAngles(CelestialBody sunBody, Frame inertialFrame, Frame locFrame, TimeStampedPVCoordinates pv)
+    throws OrekitException {
+    AbsoluteDate absDate = pv.getDate();
+    
+    // Get the respective coordinates
+    Vector3D sunFromEarth = sunBody.getPVCoordinates(absDate, inertialFrame).getPosition();
+    Vector3D satFromEarth = pv.getPosition();
+    Vector3D sunFromSat = sunBody.getPVCoordinates(absDate, locFrame).getPosition();
+    
+    // Get solar angles
+    double subsol, sunAzim, sunElev;
+    subsol= Math.toDegrees(Vector3D.angle(sunFromEarth,satFromEarth)); // [deg]
+    sunAzim = Math.toDegrees(Vector3D.angle(Vector3D.PLUS_I,sunFromSat.add(new Vector3D(0.0,0.0,-sunFromSat.getZ())))); // [deg]
+    sunElev = Math.toDegrees(Vector3D.angle(sunFromSat,new Vector3D(sunFromSat.getX(),sunFromSat.getY(),0.0))); // [deg]
+    // Fix sign for sunAzim
+    if (sunFromSat.getY() < 0) {
+      sunAzim = 360 - sunAzim;
+    }
+    // Fix sign for sunElev
+    if (sunFromSat.getZ() < 0) {
+      sunElev = - sunElev;
+    }
+    
+    return new double[] {sunAzim, sunElev, subsol};
+  }
+  
+  // Gets the Earth angles {azimuth, elevation} [deg]
+  static double[] getEarthAngles(CelestialBody earthBody, Frame locFrame, AbsoluteDate absDate) throws OrekitException {
+    // Get the respective coordinates
+    Vector3D earthFromSat = earthBody.getPVCoordinates(absDate, locFrame).getPosition();
+    
+    // Get Earth angles
+    double earthAzim, earthElev;
+    if (earthFromSat.getX() == 0 & earthFromSat.getY() == 0) { // Prevents crashing when X and Y are both 0
+      earthAzim = 0.0; // [deg]
+      if (earthFromSat.getZ() > 0)
+        earthElev = 90.0; // [deg]
+      else
+        earthElev = -90.0; // [deg]
+    } else {
+      earthAzim = Math.toDegrees(Vector3D.angle(Vector3D.PLUS_I,earthFromSat.add(new Vector3D(0.0,0.0,-earthFromSat.getZ())))); // [deg]
+      earthElev = Math.toDegrees(Vector3D.angle(earthFromSat,new Vector3D(earthFromSat.getX(),earthFromSat.getY(),0.0))); // [deg]
+    }
+    // Fix sign for earthAzim
+    if (earthFromSat.getY() < 0) {
+      earthAzim = 360 - earthAzim;
+    }
+    // Fix sign for sunElev
+    if (earthFromSat.getZ() < 0) {
+      earthElev = - earthElev;
+    }
+    
+    return new double[] {earthAzim, earthElev};
+  }
+  
+  // Writes a line of the solar angles file
+  static void writeSunAngles(PrintWriter printer, AbsoluteDate absDate, double[] angles) throws OrekitException {
+    // Break down into date and time
+    DateTimeComponents dateTimeComps = absDate.getComponents(0); // Synched with UTC
+    DateComponents dateComps = dateTimeComps.getDate();
+    TimeComponents timeComps = dateTimeComps.getTime();
+    
+    printer.printf(loc,"%d %s %d %02d:%02d:%06.3f,%07.3f,%07.3f,%07.3f\n",dateComps.getDay(),
+                   dateComps.getMonthEnum().getCapitalizedAbbreviation(),dateComps.getYear(),timeComps.getHour(),
+                   timeComps.getMinute(),timeComps.getSecond(),angles[0],angles[1],angles[2]);
+  }
+  
+  // Writes a line of the Earth angles file
+  static void writeEarthAngles(PrintWriter printer, AbsoluteDate absDate, double[] angles) throws OrekitException {
+    // Break down into date and time
+    DateTimeComponents dateTimeComps = absDate.getComponents(0); // Synched with UTC
+    DateComponents dateComps = dateTimeComps.getDate();
+    TimeComponents timeComps = dateTimeComps.getTime();
+    
+    printer.printf(loc,"%d %s %d %02d:%02d:%06.3f,%07.3f,%07.3f\n",dateComps.getDay(),
+                   dateComps.getMonthEnum().getCapitalizedAbbreviation(),dateComps.getYear(),timeComps.getHour(),
+                   timeComps.getMinute(),timeComps.getSecond(),angles[0],angles[1]);
+  }
+  
+  // Writes a line of an access times file
+  static void writeAccess(PrintWriter printer, int aNum, AbsoluteDate aBegin, AbsoluteDate aEnd)
+    throws OrekitException {
+    double visDuration = aEnd.durationFrom(aBegin);
+    DateTimeComponents compsBegin = aBegin.getComponents(0); // Synched with UTC
+    DateTimeComponents compsEnd = aEnd.getComponents(0); // Synched with UTC
+    DateComponents dateBegin = compsBegin.getDate();
+    DateComponents dateEnd = compsEnd.getDate();
+    TimeComponents timeBegin = compsBegin.getTime();
+    TimeComponents timeEnd = compsEnd.getTime();
+    
+    printer.printf(loc,"%d,%d %s %d %02d:%02d:%06.3f,%d %s %d %02d:%02d:%06.3f,%07.3f\n",aNum,
+                   dateBegin.getDay(),dateBegin.getMonthEnum().getCapitalizedAbbreviation(),dateBegin.getYear(),
+                   timeBegin.getHour(),timeBegin.getMinute(),timeBegin.getSecond(),dateEnd.getDay(),
+                   dateEnd.getMonthEnum().getCapitalizedAbbreviation(),dateEnd.getYear(),timeEnd.getHour(),
+                   timeEnd.getMinute(),timeEnd.getSecond(),visDuration);
+  }
+  /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  
+  // Opens a printer for the given file, truncated to offset (a negative offset starts a new file)
+  private PrintWriter openPrinter(String fName, long offset) throws IOException {
+    if (offset < 0)
+      return new PrintWriter(fName,"UTF-8");
+    
+    RandomAccessFile raf = new RandomAccessFile(fName,"rw");
+    try {
+      raf.setLength(offset);
+    } finally {
+      raf.close();
+    }
+    
+    return new PrintWriter(new OutputStreamWriter(new FileOutputStream(fName,true),"UTF-8"));
+  }
+  
+  // Flushes the printers and saves the current state of the run
+  private void saveCheckpoint(SpacecraftState state, AbsoluteDate extrapDate, boolean finished) throws IOException {
+    SatelliteCheckpoint checkpoint = new SatelliteCheckpoint();
+    checkpoint.initialDate = initialDate;
+    checkpoint.finalDate = finalDate;
+    checkpoint.stepT = stepT;
+    checkpoint.propagatorId = propagatorId;
+    checkpoint.state = state;
+    checkpoint.extrapDate = extrapDate;
+    checkpoint.finished = finished;
+    checkpoint.accessNum.putAll(accessNum);
+    checkpoint.accessBegin.putAll(accessBegin);
+    
+    // Offsets are only valid once everything buffered has reached the files
+    if (printSun) {
+      sunAnglesPrinter.flush();
+      checkpoint.sunOffset = new File(sunAnglesName).length();
+    }
+    if (printEarth) {
+      earthAnglesPrinter.flush();
+      checkpoint.earthOffset = new File(earthAnglesName).length();
+    }
+    if (printAccess) {
+      for (String key : accessTimesPrinters.keySet()) {
+        accessTimesPrinters.get(key).flush();
+        checkpoint.accessOffsets.put(key, new File(accessTimesNames.get(key)).length());
+      }
+    }
+    
+    checkpoint.save(checkpointName);
+  }
+  
+  // Elevation sweep of one station: several masks evaluated on the same elevation samples
+  private class ElevationSweep {
+    private final TopocentricFrame station;
+    private final double threshold; // [s]
+    private final double[] masks; // [rad]
+    private final String[] keys; // Keys of each mask in the access maps
+    private final boolean[] inView;
+    private TimeStampedPVCoordinates lastPV;
+    
+    ElevationSweep(TopocentricFrame sta, double thres, int numMasks) {
+      station = sta;
+      threshold = thres;
+      masks = new double[numMasks];
+      keys = new String[numMasks];
+      inView = new boolean[numMasks];
+    }
+    
+    // Adds a sample (inertial frame), first is true for the sample at the start date
+    void update(TimeStampedPVCoordinates pv, boolean first) throws OrekitException {
+      double elev = station.getElevation(pv.getPosition(), inertialFrame, pv.getDate());
+      
+      for (int k = 0; k < masks.length; k++) {
+        boolean visible = elev >= masks[k];
+        
+        if (!first && visible != inView[k]) {
+          AbsoluteDate crossDate = crossing(pv, masks[k], visible);
+          
+          if (visible) {
+            accessBegin.put(keys[k], crossDate);
+          } else {
+            if (printAccess) {
+              int aNum = accessNum.get(keys[k]);
+              writeAccess(accessTimesPrinters.get(keys[k]), aNum++, accessBegin.get(keys[k]), crossDate);
+              accessNum.put(keys[k], aNum);
+            }
+            if (aggregator != null)
+              aggregator.addAccess(keys[k], accessBegin.get(keys[k]), crossDate);
+          }
+        }
+        
+        inView[k] = visible;
+      }
+      
+      lastPV = pv;
+    }
+    
+    // Reports the accesses still open to the aggregator, closed at the given date
+    void closeAccesses(AbsoluteDate end) {
+      for (int k = 0; k < masks.length; k++)
+        if (inView[k])
+          aggregator.addAccess(keys[k], accessBegin.get(keys[k]), end);
+    }
+    
+    // Finds the mask crossing between the last sample and pv (Hermite interpolation of both samples)
+    private AbsoluteDate crossing(TimeStampedPVCoordinates pv, double mask, boolean increasing) throws OrekitException {
+      List<TimeStampedPVCoordinates> samples = Arrays.asList(lastPV, pv);
+      double t0 = 0.0, t1 = pv.getDate().durationFrom(lastPV.getDate());
+      
+      while (t1 - t0 > threshold) {
+        double tm = 0.5*(t0 + t1);
+        AbsoluteDate dm = lastPV.getDate().shiftedBy(tm);
+        Vector3D pm = TimeStampedPVCoordinates.interpolate(dm, CartesianDerivativesFilter.USE_PV, samples).getPosition();
+        if ((station.getElevation(pm, inertialFrame, dm) < mask) == increasing)
+          t0 = tm;
+        else
+          t1 = tm;
+      }
+      
+      return lastPV.getDate().shiftedBy(0.5*(t0 + t1));
+    }
+  }
+  
   // Visibility Hanlder for Elevation Detectors
   private class VisibilityHandler implements EventHandler<ElevationDetector> {
     public Action eventOccurred(final SpacecraftState s, final ElevationDetector detector,
                                 final boolean increasing) {
-      // Ignore events before the initial date
-      if (s.getDate().compareTo(initialDate) < 0)
+      // Ignore events before the start date
+      if (s.getDate().compareTo(startDate) < 0)
         return Action.STOP;
       
       if (increasing) {
         accessBegin.put(detector.getTopocentricFrame().getName(),s.getDate());
+        inView.put(detector.getTopocentricFrame().getName(),true);
         
         return Action.CONTINUE;
       } else {
         AbsoluteDate aEnd = s.getDate();
+        inView.put(detector.getTopocentricFrame().getName(),false);
         
         if (printAccess) {
           try{
-            double visDuration = aEnd.durationFrom(accessBegin.get(detector.getTopocentricFrame().getName()));
-            DateTimeComponents compsBegin =
-              accessBegin.get(detector.getTopocentricFrame().getName()).getComponents(0); // Synched with UTC
-            DateTimeComponents compsEnd = aEnd.getComponents(0); // Synched with UTC
-            DateComponents dateBegin = compsBegin.getDate();
-            DateComponents dateEnd = compsEnd.getDate();
-            TimeComponents timeBegin = compsBegin.getTime();
-            TimeComponents timeEnd = compsEnd.getTime();
-            
             int aNum = accessNum.get(detector.getTopocentricFrame().getName());
-            accessTimesPrinters.get(detector.getTopocentricFrame().getName()).
-              printf(loc,"%d,%d %s %d %02d:%02d:%06.3f,%d %s %d %02d:%02d:%06.3f,%07.3f\n",aNum++,
-                     dateBegin.getDay(),dateBegin.getMonthEnum().getCapitalizedAbbreviation(),dateBegin.getYear(),
-                     timeBegin.getHour(),timeBegin.getMinute(),timeBegin.getSecond(),dateEnd.getDay(),
-                     dateEnd.getMonthEnum().getCapitalizedAbbreviation(),dateEnd.getYear(),timeEnd.getHour(),
-                     timeEnd.getMinute(),timeEnd.getSecond(),visDuration);
+            writeAccess(accessTimesPrinters.get(detector.getTopocentricFrame().getName()), aNum++,
+                        accessBegin.get(detector.getTopocentricFrame().getName()), aEnd);
             accessNum.put(detector.getTopocentricFrame().getName(),aNum);
           } catch (Exception ex) {
             System.out.println("Error calculating or writing to Access Times file: " + ex);
           }
         }
+        if (aggregator != null)
+          aggregator.addAccess(detector.getTopocentricFrame().getName(),
+                               accessBegin.get(detector.getTopocentricFrame().getName()), aEnd);
         return Action.STOP;
       }
     }
@@ -0,0 +1,77 @@
+/* Back-end of Satellite Orbit Analizer: SatelliteCheckpoint Class
+ * Snapshot of a running Satellite, used to resume long propagations after a crash
+ *
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ *
+ * NOTE: The Orekit data must be configured before loading a checkpoint (SpacecraftState needs the frames)
+ * NOTE: A checkpoint is only used by a run with the same dates, step and propagator (see matches)
+ */
+
+// Orekit Libraries
+import org.orekit.time.*;
+import org.orekit.propagation.*;
+
+// Java Libraries
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// SatelliteCheckpoint Class
+public class SatelliteCheckpoint implements Serializable {
+  private static final long serialVersionUID = 2L;
+  
+  // Run the checkpoint belongs to
+  AbsoluteDate initialDate, finalDate;
+  double stepT; // [s]
+  String propagatorId; // See Satellite
+  
+  // Propagation state
+  SpacecraftState state; // Last state reached, null if no step was completed
+  AbsoluteDate extrapDate; // Next date to be propagated
+  boolean finished = false;
+  
+  // Access state
+  Map<String,Integer> accessNum = new HashMap<String,Integer>();
+  Map<String,AbsoluteDate> accessBegin = new HashMap<String,AbsoluteDate>();
+  
+  // Output file offsets [bytes], everything after them was written after the checkpoint
+  long sunOffset, earthOffset;
+  Map<String,Long> accessOffsets = new HashMap<String,Long>();
+  
+  // True if the checkpoint belongs to a run with the same dates, step and propagator
+  public boolean matches(AbsoluteDate iDate, AbsoluteDate fDate, double step, String propId) {
+    return initialDate != null && initialDate.equals(iDate) && finalDate.equals(fDate) && stepT == step &&
+           propagatorId != null && propagatorId.equals(propId);
+  }
+  
+  // Writes the checkpoint (to a temporary file first, so a crash while saving keeps the previous one)
+  public void save(String fileName) throws IOException {
+    File tmp = new File(fileName + ".tmp");
+    
+    ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeObject(this);
+    } finally {
+      out.close();
+    }
+    
+    Files.move(tmp.toPath(), Paths.get(fileName), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+  
+  // Reads a checkpoint, returns null if there is none (or it was written by an older version)
+  public static SatelliteCheckpoint load(String fileName) throws IOException, ClassNotFoundException {
+    File f = new File(fileName);
+    if (!f.exists())
+      return null;
+    
+    ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(f)));
+    try {
+      return (SatelliteCheckpoint) in.readObject();
+    } catch (InvalidClassException e) {
+      return null;
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/* Back-end of Satellite Orbit Analizer: SyntheticCatalog Class
+ * Generates reproducible catalogs of synthetic TLEs (LEO/MEO/GEO/HEO mixes) in the same format as SOA.tleData
+ * (name, line 1, line 2), used by SOABenchmark to test how the system scales
+ *
+ * Author: Javier Montemayor
+ * Created: 2026-10-18
+ *
+ * Orbit classes (random elements, uniform in the given ranges):
+ * - LEO: altitude 400-1500 km, e < 0.01, half sun-synchronous (i 96-100 deg), half i 20-90 deg
+ * - MEO: altitude 19000-23500 km, e < 0.01, i 50-65 deg (navigation constellations)
+ * - GEO: altitude 35786 +/- 50 km, e < 0.0005, i < 1 deg
+ * - HEO: Molniya-like, perigee altitude 500-1500 km, apogee altitude 35000-40000 km, i 63.4 deg, perigee 265-275 deg
+ *
+ * NOTE: The same size, mix and seed always give the same catalog
+ * NOTE: The number of objects of each class follows the mix exactly (largest remainder), the classes are shuffled so
+ *       consecutive objects (and threads) get a similar load
+ */
+
+// Orekit Libraries
+import org.orekit.errors.*;
+import org.orekit.time.*;
+import org.orekit.utils.*;
+import org.orekit.propagation.analytical.tle.*;
+
+// Java Libraries
+import java.util.*;
+
+// SyntheticCatalog Class
+public class SyntheticCatalog {
+  // Defaults and Other Finals
+  public enum OrbitClass { LEO, MEO, GEO, HEO }
+  private static final double MU = Constants.WGS84_EARTH_MU; // [m^3/s^2]
+  private static final double RE = Constants.WGS84_EARTH_EQUATORIAL_RADIUS; // [m]
+  private static final int MAX_SAT_NUMBER = 99999; // TLE format limit
+  
+  // Generates a catalog of size objects, mix holds the weights of LEO, MEO, GEO and HEO, TLE epochs are spread over
+  // the day before epoch
+  public static String[] generate(int size, double[] mix, AbsoluteDate epoch, long seed) throws OrekitException {
+    if (size > MAX_SAT_NUMBER)
+      throw new IllegalArgumentException("At most " + MAX_SAT_NUMBER + " objects are supported.");
+    
+    Random random = new Random(seed);
+    List<OrbitClass> classes = getClasses(size, mix);
+    Collections.shuffle(classes, random);
+    
+    String tles[] = new String[size*3];
+    for (int k = 0; k < size; k++) {
+      OrbitClass orbitClass = classes.get(k);
+      TLE tle = createTLE(k + 1, orbitClass, epoch.shiftedBy(-random.nextDouble()*Constants.JULIAN_DAY), random);
+      
+      tles[k*3] = String.format("SYN-%s %05d", orbitClass, k + 1);
+      tles[k*3+1] = tle.getLine1();
+      tles[k*3+2] = tle.getLine2();
+    }
+    
+    return tles;
+  }
+  
+  // Number of objects of each class (largest remainder), in class order
+  private static List<OrbitClass> getClasses(int size, double[] mix) {
+    OrbitClass values[] = OrbitClass.values();
+    if (mix.length != values.length)
+      throw new IllegalArgumentException("The mix needs one weight per orbit class (LEO, MEO, GEO, HEO).");
+    
+    double total = 0.0;
+    for (double w : mix)
+      total += w;
+    
+    int counts[] = new int[values.length];
+    double remainders[] = new double[values.length];
+    int assigned = 0;
+    for (int c = 0; c < values.length; c++) {
+      double exact = size*mix[c]/total;
+      counts[c] = (int) Math.floor(exact);
+      remainders[c] = exact - counts[c];
+      assigned += counts[c];
+    }
+    for (; assigned < size; assigned++) {
+      int best = 0;
+      for (int c = 1; c < values.length; c++)
+        if (remainders[c] > remainders[best])
+          best = c;
+      counts[best]++;
+      remainders[best] = -1.0;
+    }
+    
+    List<OrbitClass> classes = new ArrayList<OrbitClass>(size);
+    for (int c = 0; c < values.length; c++)
+      for (int k = 0; k < counts[c]; k++)
+        classes.add(values[c]);
+    
+    return classes;
+  }
+  
+  // Creates the TLE of one object
+  private static TLE createTLE(int satNumber, OrbitClass orbitClass, AbsoluteDate tleEpoch, Random random) {
+    double perigeeAlt, apogeeAlt, i, pa, bStar; // [m], [m], [deg], [deg], []
+    double raan = uniform(random, 0.0, 360.0), meanAnomaly = uniform(random, 0.0, 360.0); // [deg]
+    
+    switch (orbitClass) {
+      case LEO:
+        perigeeAlt = uniform(random, 400.0e3, 1500.0e3);
+        apogeeAlt = perigeeAlt + uniform(random, 0.0, 0.01)*2.0*(RE + perigeeAlt); // e < 0.01
+        i = random.nextBoolean() ? uniform(random, 96.0, 100.0) : uniform(random, 20.0, 90.0);
+        pa = uniform(random, 0.0, 360.0);
+        bStar = uniform(random, 1.0e-5, 1.0e-4);
+        break;
+      case MEO:
+        perigeeAlt = uniform(random, 19000.0e3, 23500.0e3);
+        apogeeAlt = perigeeAlt + uniform(random, 0.0, 0.01)*2.0*(RE + perigeeAlt);
+        i = uniform(random, 50.0, 65.0);
+        pa = uniform(random, 0.0, 360.0);
+        bStar = 0.0;
+        break;
+      case GEO:
+        perigeeAlt = uniform(random, 35736.0e3, 35836.0e3);
+        apogeeAlt = perigeeAlt + uniform(random, 0.0, 0.0005)*2.0*(RE + perigeeAlt);
+        i = uniform(random, 0.0, 1.0);
+        pa = uniform(random, 0.0, 360.0);
+        bStar = 0.0;
+        break;
+      default: // HEO
+        perigeeAlt = uniform(random, 500.0e3, 1500.0e3);
+        apogeeAlt = uniform(random, 35000.0e3, 40000.0e3);
+        i = 63.4;
+        pa = uniform(random, 265.0, 275.0);
+        bStar = uniform(random, 1.0e-5, 1.0e-4);
+    }
+    
+    double a = RE + (perigeeAlt + apogeeAlt)/2.0; // [m]
+    double e = (apogeeAlt - perigeeAlt)/(2.0*a);
+    double meanMotion = Math.sqrt(MU/(a*a*a)); // [rad/s]
+    
+    return new TLE(satNumber, 'U', 2020, 1 + satNumber % 999, "A", 0, 999, tleEpoch, meanMotion, 0.0, 0.0, e,
+                   Math.toRadians(i), Math.toRadians(pa), Math.toRadians(raan), Math.toRadians(meanAnomaly), 0, bStar);
+  }
+  
+  // Uniform random value in [min, max)
+  private static double uniform(Random random, double min, double max) {
+    return min + (max - min)*random.nextDouble();
+  }
+}